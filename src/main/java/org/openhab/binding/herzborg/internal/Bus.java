@@ -16,9 +16,24 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.ControlAddress;
 import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Function;
 import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
 import org.openhab.core.thing.ThingStatusDetail;
@@ -27,6 +42,13 @@ import org.slf4j.LoggerFactory;
 
 /**
  * The {@link Bus} is a handy base class, implementing data communication with Herzborg devices.
+ * All transactions are executed by a single I/O worker thread, owned by the bus. Requests are
+ * queued by priority, so that user commands are never stuck behind a pile of pending polls.
+ * Commands, which haven't been sent yet, are coalesced: a newer movement or setting for the
+ * same device replaces the older one, and STOP cancels pending movements.
+ * Reception is event-driven: implementations pass incoming data to {@link #receive(byte[], int, int)}
+ * and the worker only waits for the reply to be assembled, up to a deadline.
+ * The worker runs on its own (preferably virtual) thread and never borrows openHAB's shared pools.
  *
  * @author Pavel Fedin - Initial contribution
  */
@@ -34,9 +56,93 @@ import org.slf4j.LoggerFactory;
 public class Bus {
     private final Logger logger = LoggerFactory.getLogger(Bus.class);
 
+    // Herzborg serial bus operates with fixed parameters: 9600 8n1
+    public static final int BAUD_RATE = 9600;
+    private static final int BITS_PER_BYTE = 10;
+    // Typical reply delay of a device. Used for estimating how long a transaction occupies the bus, for letting
+    // devices act on a broadcast before talking to them again, and as the minimum reply allowance, which also
+    // covers OS and USB adapter latencies.
+    private static final long TYPICAL_TURNAROUND_MICROS = 20000;
+    // Reply timeout is never longer than this, in milliseconds
+    private static final long REPLY_TIMEOUT = 1000;
+    // Use this as timeout to have it calculated automatically from frame lengths and device's turnaround time
+    public static final long AUTO_TIMEOUT = 0;
+    // Use this as timeout for broadcasts, which nobody replies to
+    public static final long NO_REPLY = -1;
+    // Turnaround allowance for devices we don't know enough about yet
+    private static final long DEFAULT_TURNAROUND_MICROS = 200000;
+    private static final int MIN_TURNAROUND_SAMPLES = 4;
+    // Coalescing key for transactions, which are never coalesced
+    private static final int NO_KEY = -1;
+    private static final byte[] NO_DATA = new byte[0];
+    // Number of frames kept in the wire log
+    private static final int WIRE_LOG_SIZE = 64;
+
     protected @Nullable InputStream dataIn;
     protected @Nullable OutputStream dataOut;
 
+    private final PriorityBlockingQueue<Transaction> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile @Nullable Thread worker;
+    // Commands, which are still in the queue, by coalescing key. Also serves as a lock.
+    private final Map<Integer, Transaction> pendingCommands = new HashMap<>();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final BusMetrics metrics = new BusMetrics();
+    // Reply assembly. The decoder also serves as a lock for the pending reply.
+    private final WireLog wireLog = new WireLog(WIRE_LOG_SIZE);
+    private final FrameDecoder decoder = new FrameDecoder(wireLog);
+    private @Nullable CompletableFuture<Packet> pendingReply;
+    // Learned reply delays of devices. Only used by the worker thread.
+    private final Map<Short, TurnaroundEstimator> turnaround = new HashMap<>();
+    private volatile Executor callbackExecutor = Runnable::run;
+    private volatile @Nullable ConnectionListener connectionListener;
+    private volatile @Nullable FrameCapture capture;
+
+    /**
+     * Transaction priority. Declaration order defines precedence; the first one wins.
+     */
+    public enum Priority {
+        COMMAND,
+        POLL,
+        DISCOVERY
+    }
+
+    private static class Transaction implements Comparable<Transaction> {
+        Packet packet; // Guarded by pendingCommands, may be replaced by a newer command
+        final Priority priority;
+        final long sequence;
+        final int key;
+        final long timeout;
+        final CompletableFuture<@Nullable Packet> future = new CompletableFuture<>();
+
+        Transaction(Packet packet, Priority priority, long sequence, int key, long timeout) {
+            this.packet = packet;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.key = key;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public int compareTo(Transaction other) {
+            int diff = priority.compareTo(other.priority);
+            // Requests with the same priority are executed in order of submission
+            return diff != 0 ? diff : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Gets notified when the underlying connection fails
+     */
+    public interface ConnectionListener {
+        /**
+         * The bus is not usable any more and has to be reopened. Must not block.
+         *
+         * @param reason human-readable description of the failure
+         */
+        void connectionLost(String reason);
+    }
+
     public static class Result {
         ThingStatusDetail code;
         @Nullable
@@ -66,7 +172,89 @@ public class Bus {
         }
     }
 
+    /**
+     * Estimate how long a transaction occupies the bus
+     *
+     * @param pkt request packet
+     * @return transaction time in microseconds
+     */
+    public long getTransactionTime(Packet pkt) {
+        return getAirtime(pkt.getBuffer().length + pkt.getReplyLength()) + TYPICAL_TURNAROUND_MICROS;
+    }
+
+    /**
+     * Get time, needed to transfer the given number of bytes over the wire
+     *
+     * @param bytes number of bytes
+     * @return airtime in microseconds
+     */
+    public long getAirtime(int bytes) {
+        return bytes * BITS_PER_BYTE * 1000000L / BAUD_RATE;
+    }
+
+    /**
+     * Set executor for completing transactions. Callers' continuations run there, so that
+     * they never delay the bus. By default transactions are completed by the I/O worker itself.
+     */
+    public void setCallbackExecutor(Executor executor) {
+        callbackExecutor = executor;
+    }
+
+    /**
+     * Start or stop recording all the traffic
+     *
+     * @param capture capture to record into, null to stop
+     */
+    public void setCapture(@Nullable FrameCapture capture) {
+        this.capture = capture;
+    }
+
+    public void setConnectionListener(@Nullable ConnectionListener listener) {
+        connectionListener = listener;
+    }
+
+    /**
+     * Report a failure of the underlying port or connection. To be called by implementations.
+     */
+    protected void connectionLost(String reason) {
+        ConnectionListener listener = connectionListener;
+
+        if (listener != null) {
+            listener.connectionLost(reason);
+        } else {
+            logger.warn("Bus connection lost: {}", reason);
+        }
+    }
+
+    protected void startWorker(String name) {
+        Thread thread = new BusThreadFactory(name).newThread(this::run);
+
+        worker = thread;
+        thread.start();
+    }
+
+    private void stopWorker() {
+        Thread thread = worker;
+
+        if (thread != null) {
+            worker = null;
+            thread.interrupt();
+        }
+
+        synchronized (pendingCommands) {
+            pendingCommands.clear();
+        }
+
+        // Whatever is left in the queue will never be sent; report "no bus" to the callers
+        Transaction t;
+        while ((t = queue.poll()) != null) {
+            t.future.complete(null);
+        }
+    }
+
     public void dispose() {
+        stopWorker();
+
         safeClose(dataOut);
         safeClose(dataIn);
 
@@ -74,63 +262,386 @@ public class Bus {
         dataIn = null;
     }
 
-    public synchronized @Nullable Packet doPacket(Packet pkt) throws IOException {
-        OutputStream dataOut = this.dataOut;
-        InputStream dataIn = this.dataIn;
+    /**
+     * Queue a packet for sending.
+     * A command may be merged with a pending one for the same device, in this case both callers get
+     * the same future. A command, cancelled by STOP, gets its future cancelled.
+     *
+     * @param pkt packet to send
+     * @param priority transaction priority
+     * @return a future, which is completed with the reply, or with null if the bus is not connected.
+     */
+    public CompletableFuture<@Nullable Packet> submit(Packet pkt, Priority priority) {
+        return submit(pkt, priority, AUTO_TIMEOUT);
+    }
 
-        if (dataOut == null || dataIn == null) {
-            return null;
+    /**
+     * Queue a packet for sending with a custom reply timeout.
+     *
+     * @param pkt packet to send
+     * @param priority transaction priority
+     * @param timeout reply timeout in milliseconds, {@link #AUTO_TIMEOUT} or {@link #NO_REPLY}
+     * @return a future, which is completed with the reply, or with null if the bus is not connected.
+     *         A {@link #NO_REPLY} transaction is completed with the request itself once it has been sent.
+     */
+    public CompletableFuture<@Nullable Packet> submit(Packet pkt, Priority priority, long timeout) {
+        int key = (priority == Priority.COMMAND) ? getCoalescingKey(pkt) : NO_KEY;
+        Transaction t;
+
+        synchronized (pendingCommands) {
+            if (key != NO_KEY) {
+                Transaction pending = pendingCommands.get(key);
+
+                if (pending != null) {
+                    // Last writer wins
+                    pending.packet = pkt;
+                    coalescedCount.increment();
+                    logger.trace("Coalesced command for device {}", pkt.getDeviceAddress());
+                    return pending.future;
+                }
+            }
+
+            if (pkt.getFunction() == Function.CONTROL && pkt.getDataAddress() == ControlAddress.STOP) {
+                cancelPending(getMoveKey(pkt));
+            }
+
+            t = new Transaction(pkt, priority, sequence.getAndIncrement(), key, timeout);
+            if (key != NO_KEY) {
+                pendingCommands.put(key, t);
+            }
+        }
+
+        queue.add(t);
+
+        // The worker could have been stopped concurrently, make sure we don't leave a stale request
+        if (worker == null && queue.remove(t)) {
+            t.future.complete(null);
+        }
+
+        return t.future;
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * Cancel movements of the given devices, which are still waiting in the queue, as if each of them
+     * had got a STOP. This is needed when they are stopped by a broadcast.
+     *
+     * @param addresses device addresses
+     */
+    public void cancelMoves(Collection<Short> addresses) {
+        synchronized (pendingCommands) {
+            for (short address : addresses) {
+                cancelPending(getMoveKey(address));
+            }
         }
+    }
 
-        int readLength = Packet.MIN_LENGTH;
+    private static int getMoveKey(Packet pkt) {
+        return getMoveKey(pkt.getDeviceAddress());
+    }
 
+    private static int getMoveKey(short address) {
+        return Short.toUnsignedInt(address) | (Function.CONTROL << 16) | (ControlAddress.PERCENT << 24);
+    }
+
+    // Commands with the same key override each other
+    private static int getCoalescingKey(Packet pkt) {
         switch (pkt.getFunction()) {
-            case Function.READ:
-                // The reply will include data itself
-                readLength += pkt.getDataLength();
-                break;
-            case Function.WRITE:
-                // The reply is number of bytes written
-                readLength += 1;
-                break;
             case Function.CONTROL:
-                // The whole packet will be echoed back
-                readLength = pkt.getBuffer().length;
-                break;
+                switch (pkt.getDataAddress()) {
+                    case ControlAddress.OPEN:
+                    case ControlAddress.CLOSE:
+                    case ControlAddress.PERCENT:
+                    case ControlAddress.RUN_CONTEXT:
+                        // All movements override each other
+                        return getMoveKey(pkt);
+                    default:
+                        return NO_KEY;
+                }
+            case Function.WRITE:
+                return Short.toUnsignedInt(pkt.getDeviceAddress()) | (Function.WRITE << 16)
+                        | (Byte.toUnsignedInt(pkt.getDataAddress()) << 24);
             default:
-                // We must not have anything else here
-                throw new IllegalStateException("Unknown function code");
+                return NO_KEY;
         }
+    }
 
-        dataOut.write(pkt.getBuffer());
+    // Must be called with pendingCommands locked
+    private void cancelPending(int key) {
+        Transaction pending = pendingCommands.remove(key);
 
-        int readOffset = 0;
-        byte[] replyBuffer = new byte[readLength];
+        if (pending != null && queue.remove(pending)) {
+            coalescedCount.increment();
+            pending.future.cancel(false);
+        }
+    }
 
-        while (readLength > 0) {
-            int n = dataIn.read(replyBuffer, readOffset, readLength);
+    private void run() {
+        Thread self = Thread.currentThread();
 
-            if (n < 0) {
-                throw new IOException("EOF from serial port");
-            } else if (n == 0) {
+        while (worker == self) {
+            Transaction t;
+
+            try {
+                t = queue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            Packet pkt;
+
+            synchronized (pendingCommands) {
+                // From now on the command can't be replaced
+                pendingCommands.remove(t.key, t);
+                pkt = t.packet;
+            }
+
+            if (t.future.isDone()) {
+                // Cancelled by the caller, don't waste bus time
+                continue;
+            }
+
+            Packet reply = null;
+            Throwable error = null;
+
+            try {
+                reply = doPacket(pkt, t.priority, t.timeout);
+            } catch (IOException | RuntimeException e) {
+                error = e;
+            }
+
+            complete(t.future, reply, error);
+        }
+
+        logger.trace("I/O worker stopped");
+    }
+
+    private void complete(CompletableFuture<@Nullable Packet> future, @Nullable Packet reply,
+            @Nullable Throwable error) {
+        Runnable completion = () -> {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(reply);
+            }
+        };
+
+        try {
+            callbackExecutor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            // Shutting down, nobody is going to wait for long
+            completion.run();
+        }
+    }
+
+    protected boolean isConnected() {
+        return dataOut != null;
+    }
+
+    /**
+     * Send raw data to the bus. Only to be called from the worker thread.
+     */
+    protected void send(byte[] data) throws IOException {
+        OutputStream dataOut = this.dataOut;
+
+        if (dataOut == null) {
+            throw new IOException("Bus is not connected");
+        }
+
+        dataOut.write(data);
+    }
+
+    /**
+     * Pass received data to the bus. To be called by implementations as soon as some data arrives.
+     * The pending transaction is completed as soon as a full valid reply is assembled.
+     */
+    protected void receive(byte[] data, int offset, int length) {
+        FrameCapture capture = this.capture;
+
+        if (capture != null) {
+            capture.record(FrameCapture.RX, data, offset, length);
+        }
+
+        synchronized (decoder) {
+            Packet reply = decoder.feed(data, offset, length);
+            CompletableFuture<Packet> pending = pendingReply;
+
+            if (reply != null && pending != null) {
+                pendingReply = null;
+                pending.complete(reply);
+            }
+        }
+    }
+
+    private void transmit(byte[] data) throws IOException {
+        FrameCapture capture = this.capture;
+
+        if (capture != null) {
+            capture.record(FrameCapture.TX, data, 0, data.length);
+        }
+
+        send(data);
+    }
+
+    // Reply deadline: wire time of both frames plus what we know about the device's reply delay
+    private long getReplyTimeout(Packet pkt) {
+        TurnaroundEstimator estimator = turnaround.get(pkt.getDeviceAddress());
+        long allowance = (estimator == null || estimator.getCount() < MIN_TURNAROUND_SAMPLES)
+                ? DEFAULT_TURNAROUND_MICROS
+                : Math.max(estimator.getEstimate() * 2, TYPICAL_TURNAROUND_MICROS);
+
+        return Math.min(getAirtime(pkt.getBuffer().length + pkt.getReplyLength()) + allowance,
+                TimeUnit.MILLISECONDS.toMicros(REPLY_TIMEOUT));
+    }
+
+    // Performs a single transaction. Only to be called from the worker thread.
+    private @Nullable Packet doPacket(Packet pkt, Priority priority, long timeout) throws IOException {
+        if (!isConnected()) {
+            return null;
+        }
+
+        if (timeout == NO_REPLY) {
+            return doBroadcast(pkt);
+        }
+
+        CompletableFuture<Packet> reply = new CompletableFuture<>();
+
+        synchronized (decoder) {
+            decoder.expect(pkt);
+            pendingReply = reply;
+        }
+
+        byte[] request = pkt.getBuffer();
+        long deadline = (timeout == AUTO_TIMEOUT) ? getReplyTimeout(pkt) : TimeUnit.MILLISECONDS.toMicros(timeout);
+        long start = System.nanoTime();
+
+        try {
+            transmit(request);
+        } catch (IOException e) {
+            synchronized (decoder) {
+                pendingReply = null;
+            }
+            // This is not the device's fault; the transaction is reported as "no bus"
+            connectionLost("Error writing to the bus: " + e.getMessage());
+            return null;
+        }
+        wireLog.record(WireLog.TX, pkt.getDeviceAddress(), request, 0, true);
+
+        try {
+            // The deadline is enforced by the future itself, regardless of what the transport supports
+            Packet result = reply.orTimeout(deadline, TimeUnit.MICROSECONDS).get();
+            long latency = (System.nanoTime() - start) / 1000;
+            long airtime = getAirtime(request.length + result.getBuffer().length);
+
+            wireLog.record(WireLog.RX, result.getDeviceAddress(), result.getBuffer(), latency, true);
+
+            turnaround.computeIfAbsent(pkt.getDeviceAddress(), a -> new TurnaroundEstimator()).add(latency - airtime);
+            metrics.recordTransaction(latency, airtime);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                if (priority == Priority.DISCOVERY) {
+                    metrics.recordProbeMiss(getAirtime(request.length));
+                } else {
+                    metrics.recordTimeout(getAirtime(request.length));
+                }
+                wireLog.record(WireLog.TIMEOUT, pkt.getDeviceAddress(), NO_DATA, deadline, false);
                 throw new IOException("Serial read timeout");
             }
+            throw new IOException(e.getCause());
+        } finally {
+            synchronized (decoder) {
+                pendingReply = null;
+            }
+        }
+    }
+
+    // Sends a packet, which nobody answers. Only to be called from the worker thread.
+    private @Nullable Packet doBroadcast(Packet pkt) throws IOException {
+        byte[] request = pkt.getBuffer();
+        long airtime = getAirtime(request.length);
+        long start = System.nanoTime();
 
-            readOffset += n;
-            readLength -= n;
+        try {
+            transmit(request);
+        } catch (IOException e) {
+            connectionLost("Error writing to the bus: " + e.getMessage());
+            return null;
         }
+        wireLog.record(WireLog.TX, pkt.getDeviceAddress(), request, 0, true);
 
-        return new Packet(replyBuffer);
+        try {
+            // The frame is still on the wire; also give devices some time to act before talking to them again
+            TimeUnit.MICROSECONDS.sleep(airtime + TYPICAL_TURNAROUND_MICROS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted");
+        }
+
+        metrics.recordTransaction((System.nanoTime() - start) / 1000, airtime);
+        return pkt;
     }
 
-    public void flush() throws IOException {
-        InputStream dataIn = this.dataIn;
+    /**
+     * Parse a list of addresses and address ranges, like "1-64,65278"
+     *
+     * @throws IllegalArgumentException if the list is malformed
+     */
+    public static List<Short> parseAddresses(String list) {
+        List<Short> addresses = new ArrayList<>();
+
+        for (String range : list.split(",")) {
+            range = range.trim();
+            if (range.isEmpty()) {
+                continue;
+            }
+
+            int dash = range.indexOf('-');
+            int from = Integer.parseInt((dash < 0 ? range : range.substring(0, dash)).trim());
+            int to = (dash < 0) ? from : Integer.parseInt(range.substring(dash + 1).trim());
+
+            if (from < 0 || to > 0xFFFF || from > to) {
+                throw new IllegalArgumentException("Invalid address range: " + range);
+            }
 
-        if (dataIn != null) {
-            // Unfortunately Java streams can't be flushed. Just read and drop all the characters
-            while (dataIn.available() > 0) {
-                dataIn.read();
+            for (int address = from; address <= to; address++) {
+                addresses.add((short) address);
             }
         }
+
+        return addresses;
+    }
+
+    /**
+     * Get the log of the last frames on the wire, for diagnostics
+     */
+    public WireLog getWireLog() {
+        return wireLog;
+    }
+
+    public BusMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getResyncCount() {
+        return decoder.getResyncCount();
+    }
+
+    public long getDiscardedBytes() {
+        return decoder.getDiscardedBytes();
+    }
+
+    public long getCrcErrors() {
+        return decoder.getCrcErrors();
     }
 }
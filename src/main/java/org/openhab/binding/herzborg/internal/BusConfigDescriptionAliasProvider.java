@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import static org.openhab.binding.herzborg.internal.HerzborgBindingConstants.*;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.config.core.ConfigDescriptionAliasProvider;
+import org.openhab.core.thing.ThingTypeUID;
+import org.osgi.service.component.annotations.Component;
+
+/**
+ * The {@link BusConfigDescriptionAliasProvider} adds parameters, common for all the bridges, to their
+ * configuration. A thing type can either have its own config description or refer to another one, so the
+ * common parameters are described once in config.xml and merged in via an alias.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+@Component(service = ConfigDescriptionAliasProvider.class)
+public class BusConfigDescriptionAliasProvider implements ConfigDescriptionAliasProvider {
+    private static final URI BUS_CONFIG = URI.create("bridge-type:herzborg:bus");
+    private static final Set<String> BRIDGE_TYPES = Collections.unmodifiableSet(
+            Stream.of(THING_TYPE_SERIAL_BUS, THING_TYPE_TCP_BUS, THING_TYPE_SIMULATED_BUS, THING_TYPE_REPLAY_BUS)
+                    .map(ThingTypeUID::getAsString).collect(Collectors.toSet()));
+
+    @Override
+    public @Nullable URI getAlias(URI configDescriptionURI) {
+        String scheme = configDescriptionURI.getScheme();
+
+        if (("bridge-type".equals(scheme) || "thing-type".equals(scheme))
+                && BRIDGE_TYPES.contains(configDescriptionURI.getSchemeSpecificPart())) {
+            return BUS_CONFIG;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The {@link BusConfiguration} class contains configuration parameters, common for all bridges.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+public class BusConfiguration {
+    public int utilisation_target = PollScheduler.DEFAULT_TARGET;
+    public @Nullable String capture_file;
+}
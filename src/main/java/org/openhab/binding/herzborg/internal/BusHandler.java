@@ -12,11 +12,34 @@
  */
 package org.openhab.binding.herzborg.internal;
 
+import static org.openhab.binding.herzborg.internal.HerzborgBindingConstants.*;
+
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.QuantityType;
+import org.openhab.core.library.unit.MetricPrefix;
+import org.openhab.core.library.unit.Units;
 import org.openhab.core.thing.Bridge;
 import org.openhab.core.thing.ChannelUID;
+import org.openhab.core.thing.ThingStatus;
+import org.openhab.core.thing.ThingStatusDetail;
 import org.openhab.core.thing.binding.BaseBridgeHandler;
+import org.openhab.core.thing.binding.ThingHandlerService;
 import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * The {@link BusHandler} is a handy base class, implementing data communication with Herzborg devices.
@@ -25,17 +48,294 @@ import org.openhab.core.types.Command;
  */
 @NonNullByDefault
 public abstract class BusHandler extends BaseBridgeHandler {
+    // How often bus statistics channels are updated, in seconds
+    private static final int METRICS_INTERVAL = 10;
+    // Idle time in seconds, after which the executor thread is released
+    private static final int EXECUTOR_KEEP_ALIVE = 60;
+    // Bounds of the delay between reconnection attempts, in milliseconds
+    private static final long MIN_RECONNECT_DELAY = 500;
+    private static final long MAX_RECONNECT_DELAY = 30000;
+
+    private final Logger logger = LoggerFactory.getLogger(BusHandler.class);
+
     protected Bus bus;
+    // Bridge's own timers and reply processing. Threads are only started when needed.
+    private final ScheduledExecutorService executor;
+    // Reopening the bus blocks, so it's done on a thread of its own
+    private final BusThreadFactory reconnectThreads;
+    private final PollScheduler pollScheduler;
+    private @Nullable ScheduledFuture<?> metricsFuture;
+    private @Nullable FrameCapture capture;
+    // Connection recovery state, guarded by this
+    private boolean active;
+    private @Nullable ScheduledFuture<?> reconnectFuture;
+    private long outageStart;
+    private long reconnectDelay;
+    // Incremented by dispose(), so that a late reconnection attempt knows it's obsolete
+    private int generation;
+    // Whether the ONLINE status tells that polling is slowed down, guarded by this
+    private boolean throttled;
+    // Opening and closing the bus may block, so they are serialized by a lock of their own, not by this
+    private final Object busLock = new Object();
 
     public BusHandler(Bridge bridge, Bus bus) {
         super(bridge);
         this.bus = bus;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                new BusThreadFactory(bridge.getUID().getId() + "-events"));
+        // The handler may be re-initialized after dispose(), so the executor is never shut down.
+        // Instead, its thread goes away when there's nothing to do.
+        executor.setKeepAliveTime(EXECUTOR_KEEP_ALIVE, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        executor.setRemoveOnCancelPolicy(true);
+        this.executor = executor;
+        this.reconnectThreads = new BusThreadFactory(bridge.getUID().getId() + "-reconnect");
+        this.pollScheduler = new PollScheduler(bus, executor);
+        bus.setCallbackExecutor(executor);
+        bus.setConnectionListener(this::connectionLost);
     }
 
     public Bus getBus() {
         return bus;
     }
 
+    /**
+     * Get the executor for bus-related housekeeping of the bridge and its devices.
+     * Tasks must not block, all of them share a single thread.
+     */
+    public ScheduledExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Read the configuration and open the bus
+     *
+     * @return result code
+     */
+    protected abstract Bus.Result initializeBus();
+
+    @Override
+    public void initialize() {
+        BusConfiguration config = getConfigAs(BusConfiguration.class);
+
+        pollScheduler.setUtilisationTarget(config.utilisation_target);
+        startCapture(config.capture_file);
+
+        Bus.Result result;
+
+        synchronized (busLock) {
+            result = initializeBus();
+        }
+
+        synchronized (this) {
+            active = true;
+        }
+
+        if (result.code == ThingStatusDetail.NONE) {
+            updateOnline();
+        } else if (result.code == ThingStatusDetail.COMMUNICATION_ERROR) {
+            // The converter may just be not up yet
+            connectionLost(String.valueOf(result.message));
+        } else {
+            updateStatus(ThingStatus.OFFLINE, result.code, result.message);
+        }
+
+        metricsFuture = executor.scheduleWithFixedDelay(this::updateMetrics, METRICS_INTERVAL, METRICS_INTERVAL,
+                TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void dispose() {
+        ScheduledFuture<?> metricsFuture = this.metricsFuture;
+
+        if (metricsFuture != null) {
+            metricsFuture.cancel(false);
+            this.metricsFuture = null;
+        }
+
+        synchronized (this) {
+            ScheduledFuture<?> reconnectFuture = this.reconnectFuture;
+
+            if (reconnectFuture != null) {
+                reconnectFuture.cancel(false);
+                this.reconnectFuture = null;
+            }
+            active = false;
+            generation++;
+        }
+
+        synchronized (busLock) {
+            bus.dispose();
+        }
+        stopCapture();
+    }
+
+    private void startCapture(@Nullable String file) {
+        if (file == null || file.isBlank()) {
+            return;
+        }
+
+        try {
+            FrameCapture capture = new FrameCapture(Paths.get(file.trim()), getThing().getUID().getId());
+
+            this.capture = capture;
+            bus.setCapture(capture);
+            logger.info("Capturing bus traffic to {}", file);
+        } catch (IOException | InvalidPathException e) {
+            logger.warn("Failed to open capture file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void stopCapture() {
+        FrameCapture capture = this.capture;
+
+        if (capture != null) {
+            bus.setCapture(null);
+            capture.close();
+            this.capture = null;
+        }
+    }
+
+    // Called by the bus from whatever thread has detected the failure
+    private synchronized void connectionLost(String reason) {
+        if (!active || reconnectFuture != null) {
+            // Either shutting down or already recovering
+            return;
+        }
+
+        logger.warn("Bus connection lost: {}; reconnecting", reason);
+        updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR, reason);
+
+        outageStart = System.nanoTime();
+        reconnectDelay = MIN_RECONNECT_DELAY;
+        reconnectFuture = executor.schedule(this::reconnect, 0, TimeUnit.MILLISECONDS);
+    }
+
+    // Runs on the executor, so only starts an attempt
+    private synchronized void reconnect() {
+        if (!active) {
+            return;
+        }
+
+        int attempt = generation;
+
+        reconnectThreads.newThread(() -> reopen(attempt)).start();
+    }
+
+    // Runs on a thread of its own and may block for as long as it takes
+    private void reopen(int attempt) {
+        Bus.Result result;
+
+        // The bus is never opened by two threads at once. If the handler is disposed after the check,
+        // dispose() waits for the lock and closes what has been opened here.
+        synchronized (busLock) {
+            if (isObsolete(attempt)) {
+                return;
+            }
+
+            // Closing the bus fails everything that's still queued, devices report "bridge offline" meanwhile
+            bus.dispose();
+            result = initializeBus();
+        }
+
+        executor.execute(() -> reopenDone(attempt, result));
+    }
+
+    // The handler has been disposed, and possibly initialized again, since the attempt has started
+    private synchronized boolean isObsolete(int attempt) {
+        return attempt != generation;
+    }
+
+    private synchronized void reopenDone(int attempt, Bus.Result result) {
+        if (isObsolete(attempt)) {
+            // dispose() has already closed the bus, and it may be in use by a new initialization now
+            return;
+        }
+
+        if (result.code == ThingStatusDetail.NONE) {
+            long outage = (System.nanoTime() - outageStart) / 1000;
+
+            bus.getMetrics().recordRecovery(outage);
+            reconnectFuture = null;
+            logger.info("Bus connection restored after {} ms", outage / 1000);
+            // Polls go through again, so devices come back online by themselves
+            updateOnline();
+        } else {
+            logger.debug("Reconnection failed: {}; next attempt in {} ms", result.message, reconnectDelay);
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR,
+                    result.message + "; reconnecting");
+            reconnectFuture = executor.schedule(this::reconnect, reconnectDelay, TimeUnit.MILLISECONDS);
+            reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY);
+        }
+    }
+
+    // Online status tells the user if the bus is too busy for polling at the configured rates
+    private synchronized void updateOnline() {
+        throttled = pollScheduler.isThrottled();
+        updateStatus(ThingStatus.ONLINE, ThingStatusDetail.NONE,
+                throttled ? "Polling is slowed down to stay within the bus utilisation target" : null);
+    }
+
+    private synchronized void updateThrottling() {
+        if (active && reconnectFuture == null && pollScheduler.isThrottled() != throttled) {
+            updateOnline();
+        }
+    }
+
+    private void updateMetrics() {
+        updateThrottling();
+
+        BusMetrics.Snapshot m = bus.getMetrics().snapshot();
+
+        updateStatistic(CHANNEL_TRANSACTIONS, new DecimalType(m.transactions));
+        updateStatistic(CHANNEL_LATENCY_P50, getLatencyState(m.latencyP50));
+        updateStatistic(CHANNEL_LATENCY_P95, getLatencyState(m.latencyP95));
+        updateStatistic(CHANNEL_LATENCY_P99, getLatencyState(m.latencyP99));
+        updateStatistic(CHANNEL_TIMEOUTS, new DecimalType(m.timeouts));
+        updateStatistic(CHANNEL_CRC_ERRORS, new DecimalType(bus.getCrcErrors()));
+        updateStatistic(CHANNEL_RESYNCS, new DecimalType(bus.getResyncCount()));
+        updateStatistic(CHANNEL_COALESCED, new DecimalType(bus.getCoalescedCount()));
+        updateStatistic(CHANNEL_QUEUE_DEPTH, new DecimalType(bus.getQueueDepth()));
+        updateStatistic(CHANNEL_UTILISATION, new QuantityType<>(m.utilisation, Units.PERCENT));
+        updateStatistic(CHANNEL_SUPPRESSED_UPDATES, new DecimalType(m.suppressedUpdates));
+        updateStatistic(CHANNEL_RECONNECTS, new DecimalType(m.reconnects));
+        updateStatistic(CHANNEL_RECOVERY_TIME, getLatencyState(m.lastRecovery));
+    }
+
+    private void updateStatistic(String channel, State state) {
+        updateState(CHANNEL_GROUP_STATISTICS + "#" + channel, state);
+    }
+
+    private QuantityType<?> getLatencyState(long micros) {
+        return new QuantityType<>(micros / 1000.0, MetricPrefix.MILLI(Units.SECOND));
+    }
+
+    public void registerDevice(PollScheduler.Pollable device) {
+        pollScheduler.register(device);
+    }
+
+    public void unregisterDevice(PollScheduler.Pollable device) {
+        pollScheduler.unregister(device);
+    }
+
+    public void pollIntervalChanged(PollScheduler.Pollable device) {
+        pollScheduler.update(device);
+    }
+
+    /**
+     * Get the interval, the device is really polled with
+     *
+     * @return poll interval in milliseconds, stretched if the bus is overloaded, or -1 if the device is not registered
+     */
+    public long getEffectiveInterval(PollScheduler.Pollable device) {
+        return pollScheduler.getEffectiveInterval(device);
+    }
+
+    @Override
+    public Collection<Class<? extends ThingHandlerService>> getServices() {
+        return Collections.singleton(CurtainDiscoveryService.class);
+    }
+
     @Override
     public void handleCommand(ChannelUID channelUID, Command command) {
         // Nothing to do here, but we have to implement it
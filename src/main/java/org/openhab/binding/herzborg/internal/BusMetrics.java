@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * The {@link BusMetrics} collects performance statistics of a bus. Recording is lock-free and
+ * doesn't allocate, so it's safe to do on every transaction.
+ * Latencies are kept in a log-linear histogram with 8 sub-buckets per power of two, so that
+ * percentiles are accurate within 12.5%.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class BusMetrics {
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = LINEAR_BUCKETS + (64 - 4) * SUB_BUCKETS;
+
+    private final LongAdder transactions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder busyMicros = new LongAdder();
+    private final LongAdder suppressedUpdates = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private volatile long lastRecoveryMicros;
+    private final AtomicLongArray latency = new AtomicLongArray(BUCKETS);
+
+    private long lastSnapshotTime = System.nanoTime();
+    private long lastBusyMicros;
+
+    /**
+     * A snapshot of the metrics, suitable for publishing. Latencies are in microseconds
+     * and reflect only transactions since the previous snapshot.
+     */
+    public static class Snapshot {
+        public long transactions;
+        public long timeouts;
+        public long suppressedUpdates;
+        public long reconnects;
+        public long lastRecovery; // Microseconds
+        public long latencyP50;
+        public long latencyP95;
+        public long latencyP99;
+        public double utilisation; // Percents
+    }
+
+    /**
+     * Record a completed transaction
+     *
+     * @param latencyMicros time from sending the request till receiving the reply
+     * @param airtimeMicros time, taken by the transferred data on the wire
+     */
+    public void recordTransaction(long latencyMicros, long airtimeMicros) {
+        transactions.increment();
+        busyMicros.add(airtimeMicros);
+        latency.incrementAndGet(getBucket(latencyMicros));
+    }
+
+    /**
+     * Record a transaction without a reply
+     *
+     * @param airtimeMicros time, taken by the request on the wire
+     */
+    public void recordTimeout(long airtimeMicros) {
+        transactions.increment();
+        timeouts.increment();
+        busyMicros.add(airtimeMicros);
+    }
+
+    /**
+     * Record a discovery probe without a reply. Misses are the norm during a scan, so they are
+     * not counted as transactions or timeouts; only the bus time is.
+     *
+     * @param airtimeMicros time, taken by the request on the wire
+     */
+    public void recordProbeMiss(long airtimeMicros) {
+        busyMicros.add(airtimeMicros);
+    }
+
+    /**
+     * Record a channel state update, suppressed because the value hasn't changed
+     */
+    public void recordSuppressedUpdate() {
+        suppressedUpdates.increment();
+    }
+
+    /**
+     * Record a successful recovery after the connection has been lost
+     *
+     * @param outageMicros time from detecting the failure till the bus is operational again
+     */
+    public void recordRecovery(long outageMicros) {
+        reconnects.increment();
+        lastRecoveryMicros = outageMicros;
+    }
+
+    /**
+     * Take a snapshot and reset latency histogram. Not to be called concurrently.
+     */
+    public Snapshot snapshot() {
+        Snapshot s = new Snapshot();
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = latency.getAndSet(i, 0);
+            total += counts[i];
+        }
+
+        s.transactions = transactions.sum();
+        s.timeouts = timeouts.sum();
+        s.suppressedUpdates = suppressedUpdates.sum();
+        s.reconnects = reconnects.sum();
+        s.lastRecovery = lastRecoveryMicros;
+        s.latencyP50 = getPercentile(counts, total, 0.50);
+        s.latencyP95 = getPercentile(counts, total, 0.95);
+        s.latencyP99 = getPercentile(counts, total, 0.99);
+
+        long now = System.nanoTime();
+        long busy = busyMicros.sum();
+        long elapsedMicros = (now - lastSnapshotTime) / 1000;
+
+        if (elapsedMicros > 0) {
+            s.utilisation = Math.min((busy - lastBusyMicros) * 100.0 / elapsedMicros, 100.0);
+        }
+
+        lastSnapshotTime = now;
+        lastBusyMicros = busy;
+        return s;
+    }
+
+    private static int getBucket(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) Math.max(value, 0);
+        }
+
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return LINEAR_BUCKETS + (msb - 4) * SUB_BUCKETS + sub;
+    }
+
+    // Upper bound of values, falling into the bucket
+    private static long getBucketValue(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+
+        int msb = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+        int sub = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+
+        return ((long) (SUB_BUCKETS + sub + 1) << (msb - SUB_BUCKET_BITS)) - 1;
+    }
+
+    private static long getPercentile(long[] counts, long total, double percentile) {
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+
+        if (total == 0) {
+            return 0;
+        }
+
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return getBucketValue(i);
+            }
+        }
+
+        return getBucketValue(counts.length - 1);
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The {@link BusThreadFactory} creates threads for bus I/O and bridge housekeeping, so that
+ * the binding never blocks openHAB's shared thread pools. Virtual threads are used if the
+ * runtime supports them (Java 21 and later); otherwise daemon platform threads are created.
+ * The binding is built for Java 11, so virtual threads are accessed via reflection.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class BusThreadFactory implements ThreadFactory {
+    private static final String PREFIX = "OH-binding-herzborg-";
+
+    private static final @Nullable Method OF_VIRTUAL;
+    private static final @Nullable Method NAME;
+    private static final @Nullable Method UNSTARTED;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method unstarted = null;
+
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class);
+            unstarted = builder.getMethod("unstarted", Runnable.class);
+            // Virtual threads may be present, but disabled as a preview feature
+            ofVirtual.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Old runtime, use platform threads
+            ofVirtual = null;
+        }
+
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        UNSTARTED = unstarted;
+    }
+
+    private final String name;
+    private final AtomicInteger count = new AtomicInteger();
+
+    public BusThreadFactory(String name) {
+        this.name = PREFIX + name;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        int n = count.getAndIncrement();
+        String threadName = (n == 0) ? name : name + "-" + n;
+        Method ofVirtual = OF_VIRTUAL;
+        Method setName = NAME;
+        Method unstarted = UNSTARTED;
+
+        if (ofVirtual != null && setName != null && unstarted != null) {
+            try {
+                Object builder = setName.invoke(ofVirtual.invoke(null), threadName);
+                Thread thread = (Thread) unstarted.invoke(builder, r);
+
+                if (thread != null) {
+                    return thread;
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // Fall back to a platform thread
+            }
+        }
+
+        Thread thread = new Thread(r, threadName);
+
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * The {@link CircuitBreaker} tracks health of a single device. After several consecutive failures
+ * the device is considered dead and is probed only with exponentially growing intervals, so that
+ * it doesn't stall the bus for everybody else.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class CircuitBreaker {
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long MIN_BACKOFF = TimeUnit.SECONDS.toNanos(2);
+    private static final long MAX_BACKOFF = TimeUnit.MINUTES.toNanos(5);
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private int failures;
+    private long backoff;
+    private long nextProbe; // System.nanoTime() based
+
+    /**
+     * Check whether the device may be polled now. Once the backoff expires, exactly one probe is let through.
+     */
+    public synchronized boolean allowPoll() {
+        if (backoff == 0) {
+            return true;
+        }
+
+        long now = System.nanoTime();
+
+        if (now - nextProbe < 0) {
+            return false;
+        }
+
+        // Don't let more probes through until this one completes
+        nextProbe = now + backoff;
+        return true;
+    }
+
+    /**
+     * Record a successful transaction. The device is healthy again.
+     */
+    public synchronized void success() {
+        failures = 0;
+        backoff = 0;
+    }
+
+    /**
+     * Record a failed transaction.
+     */
+    public synchronized void failure() {
+        failures++;
+
+        if (failures >= FAILURE_THRESHOLD) {
+            backoff = (backoff == 0) ? MIN_BACKOFF : Math.min(backoff * 2, MAX_BACKOFF);
+            nextProbe = System.nanoTime() + backoff;
+        }
+    }
+
+    /**
+     * Get human-readable description of the device health, suitable for status detail
+     */
+    public String getDescription() {
+        return getDescription(System.nanoTime());
+    }
+
+    synchronized String getDescription(long now) {
+        if (backoff == 0) {
+            return failures + " consecutive failures";
+        }
+
+        // Rounded up, so that the probe isn't announced as due while it's not
+        long remaining = (Math.max(nextProbe - now, 0) + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND;
+
+        return failures + " consecutive failures, next probe in " + remaining + " s";
+    }
+}
@@ -20,4 +20,8 @@ package org.openhab.binding.herzborg.internal;
 public class CurtainConfiguration {
     public int address;
     public int poll_interval;
+    public int fast_poll_interval = 250;
+    public int stable_polls = 3;
+    public int refresh_interval = 60;
+    public int estimate_interval = 500;
 }
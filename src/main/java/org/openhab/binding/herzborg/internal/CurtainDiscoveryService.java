@@ -0,0 +1,226 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import static org.openhab.binding.herzborg.internal.HerzborgBindingConstants.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.herzborg.internal.Bus.Priority;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.DataAddress;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.RegisterRange;
+import org.openhab.core.config.discovery.AbstractDiscoveryService;
+import org.openhab.core.config.discovery.DiscoveryResultBuilder;
+import org.openhab.core.thing.ThingStatus;
+import org.openhab.core.thing.ThingUID;
+import org.openhab.core.thing.binding.ThingHandler;
+import org.openhab.core.thing.binding.ThingHandlerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link CurtainDiscoveryService} finds curtain motors on a bus by probing device addresses.
+ * Likely addresses (factory default and 1 - 255) are probed first. Several probes are kept in the
+ * bus queue at any time, so the bus never idles between them, and the miss timeout is derived from
+ * the line speed. An interrupted scan is resumed from where it has stopped. The scan is only run
+ * while the bridge is online, and stops if the bus goes away.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class CurtainDiscoveryService extends AbstractDiscoveryService implements ThingHandlerService {
+    private final Logger logger = LoggerFactory.getLogger(CurtainDiscoveryService.class);
+
+    private static final int SCAN_TIMEOUT = 120; // seconds
+    private static final int PIPELINE_DEPTH = 4;
+    private static final int DEFAULT_ADDRESS = 0xFEFE;
+    private static final int LIKELY_RANGE_END = 255;
+    private static final int LAST_ADDRESS = 0xFFFE; // 0xFFFF is not a valid device address
+    // Every device has an address, so this is what we probe
+    private static final RegisterRange ID_RANGE = new RegisterRange(DataAddress.ID_L, DataAddress.ID_H);
+
+    private @Nullable BusHandler busHandler;
+    // Probes in the bus queue and their positions in the scan order
+    private final Map<CompletableFuture<?>, Integer> pending = new HashMap<>();
+    private boolean scanning;
+    private int nextIndex; // Position in the scan order, preserved between scans
+
+    public CurtainDiscoveryService() {
+        super(Collections.singleton(THING_TYPE_CURTAIN), SCAN_TIMEOUT, false);
+    }
+
+    @Override
+    public void setThingHandler(ThingHandler handler) {
+        if (handler instanceof BusHandler) {
+            busHandler = (BusHandler) handler;
+        }
+    }
+
+    @Override
+    public @Nullable ThingHandler getThingHandler() {
+        return busHandler;
+    }
+
+    @Override
+    public void activate() {
+        super.activate(null);
+    }
+
+    @Override
+    public void deactivate() {
+        super.deactivate();
+    }
+
+    /**
+     * Scan order: factory default address, then likely range, then everything else
+     *
+     * @return device address or -1 if the whole address space has been covered
+     */
+    private static int getAddress(int index) {
+        if (index == 0) {
+            return DEFAULT_ADDRESS;
+        }
+
+        int address = index;
+
+        if (address >= DEFAULT_ADDRESS) {
+            // Already probed
+            address++;
+        }
+
+        return address <= LAST_ADDRESS ? address : -1;
+    }
+
+    @Override
+    protected synchronized void startScan() {
+        BusHandler busHandler = this.busHandler;
+
+        if (busHandler == null) {
+            return;
+        }
+
+        if (busHandler.getThing().getStatus() != ThingStatus.ONLINE) {
+            logger.debug("Bridge is not online, not scanning");
+            return;
+        }
+
+        if (getAddress(nextIndex) < 0) {
+            // Previous scan has completed, start over
+            nextIndex = 0;
+        }
+
+        logger.debug("Starting scan from address {}", getAddress(nextIndex));
+        scanning = true;
+
+        for (int i = 0; i < PIPELINE_DEPTH; i++) {
+            probeNext(busHandler);
+        }
+    }
+
+    @Override
+    protected synchronized void stopScan() {
+        List<CompletableFuture<?>> probes = new ArrayList<>(pending.keySet());
+
+        scanning = false;
+
+        // Addresses, which haven't been probed yet, are probed by the next scan
+        for (int index : pending.values()) {
+            nextIndex = Math.min(nextIndex, index);
+        }
+        pending.clear();
+
+        // Cancelled probes are dropped from the bus queue without being sent
+        for (CompletableFuture<?> f : probes) {
+            f.cancel(false);
+        }
+
+        super.stopScan();
+    }
+
+    private Packet buildProbe(int address) {
+        return ID_RANGE.buildRequest((short) address);
+    }
+
+    private synchronized void probeNext(BusHandler busHandler) {
+        int index = nextIndex;
+        int address = getAddress(index);
+
+        if (!scanning || address < 0) {
+            if (scanning && pending.isEmpty()) {
+                logger.debug("Scan complete");
+                stopScan();
+            }
+            return;
+        }
+
+        nextIndex++;
+
+        // Nothing is known about the turnaround of a device, which hasn't been found yet, so the bus allows
+        // as much as for any unknown device. A shorter timeout would skip slow motors.
+        CompletableFuture<@Nullable Packet> probe = busHandler.getBus().submit(buildProbe(address),
+                Priority.DISCOVERY);
+        pending.put(probe, index);
+
+        probe.whenComplete((reply, error) -> {
+            synchronized (this) {
+                if (pending.remove(probe) == null) {
+                    // The scan has been stopped
+                    return;
+                }
+
+                if (reply == null && error == null) {
+                    // No bus; the address hasn't really been probed
+                    logger.debug("Bus is not available, stopping scan");
+                    nextIndex = Math.min(nextIndex, index);
+                    stopScan();
+                    return;
+                }
+            }
+
+            if (reply != null) {
+                deviceFound(address);
+            }
+
+            if (address == LIKELY_RANGE_END) {
+                logger.debug("Likely address range scanned");
+            }
+
+            // The probe may have been completed right away; don't recurse
+            busHandler.getExecutor().execute(() -> probeNext(busHandler));
+        });
+    }
+
+    private void deviceFound(int address) {
+        BusHandler busHandler = this.busHandler;
+
+        if (busHandler == null) {
+            return;
+        }
+
+        ThingUID bridgeUID = busHandler.getThing().getUID();
+        ThingUID thingUID = new ThingUID(THING_TYPE_CURTAIN, bridgeUID, String.valueOf(address));
+
+        logger.debug("Found device at address {}", address);
+        thingDiscovered(DiscoveryResultBuilder.create(thingUID).withBridge(bridgeUID)
+                .withLabel("Herzborg Curtain Motor " + address).withProperty(PROPERTY_ADDRESS, address)
+                .withRepresentationProperty(PROPERTY_ADDRESS).build());
+    }
+}
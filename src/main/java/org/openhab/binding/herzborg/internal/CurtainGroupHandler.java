@@ -0,0 +1,242 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import static org.openhab.binding.herzborg.internal.HerzborgBindingConstants.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.herzborg.internal.Bus.Priority;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.ControlAddress;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Function;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.StopMoveType;
+import org.openhab.core.library.types.UpDownType;
+import org.openhab.core.thing.Bridge;
+import org.openhab.core.thing.ChannelUID;
+import org.openhab.core.thing.Thing;
+import org.openhab.core.thing.ThingStatus;
+import org.openhab.core.thing.ThingStatusDetail;
+import org.openhab.core.thing.binding.BaseThingHandler;
+import org.openhab.core.thing.binding.BridgeHandler;
+import org.openhab.core.thing.binding.ThingHandler;
+import org.openhab.core.types.Command;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link CurtainGroupHandler} controls a group of curtain motors at once.
+ * Movements are sent as a single broadcast frame if the motors have a broadcast address, so that
+ * they all start together. Otherwise, every member gets its own frame. Contexts (scenes) are stored
+ * in the motors themselves, so that a whole group can be moved to individual positions with a
+ * single RUN_CONTEXT frame. Handlers of the members are told about movements, so that they follow them
+ * with fast polling and position estimates.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class CurtainGroupHandler extends BaseThingHandler {
+    private final Logger logger = LoggerFactory.getLogger(CurtainGroupHandler.class);
+
+    private @Nullable Bus bus;
+    private List<Short> members = Collections.emptyList();
+    private @Nullable Integer broadcastAddress;
+
+    public CurtainGroupHandler(Thing thing) {
+        super(thing);
+    }
+
+    @Override
+    public void handleCommand(ChannelUID channelUID, Command command) {
+        switch (channelUID.getId()) {
+            case CHANNEL_POSITION:
+                if (command instanceof UpDownType) {
+                    int target = (command == UpDownType.UP) ? 100 : 0;
+                    move(address -> new Packet((short) address, Function.CONTROL,
+                            (command == UpDownType.UP) ? ControlAddress.OPEN : ControlAddress.CLOSE));
+                    notifyMembers(member -> member.startMotion(target));
+                } else if (command instanceof StopMoveType) {
+                    stop();
+                    notifyMembers(CurtainHandler::stopMotion);
+                } else if (command instanceof DecimalType) {
+                    byte percent = ((DecimalType) command).byteValue();
+                    move(address -> new Packet((short) address, Function.CONTROL, ControlAddress.PERCENT, percent));
+                    notifyMembers(member -> member.startMotion(percent));
+                }
+                break;
+            case CHANNEL_STORE_CONTEXT:
+                if (command instanceof DecimalType) {
+                    byte context = ((DecimalType) command).byteValue();
+                    program(address -> new Packet((short) address, Function.CONTROL, ControlAddress.SET_CONTEXT,
+                            context));
+                }
+                break;
+            case CHANNEL_RUN_CONTEXT:
+                if (command instanceof DecimalType) {
+                    byte context = ((DecimalType) command).byteValue();
+                    move(address -> new Packet((short) address, Function.CONTROL, ControlAddress.RUN_CONTEXT,
+                            context));
+                    // Positions of contexts are only known to the motors
+                    notifyMembers(member -> member.startMotion(-1));
+                }
+                break;
+            case CHANNEL_DELETE_CONTEXT:
+                if (command instanceof DecimalType) {
+                    byte context = ((DecimalType) command).byteValue();
+                    program(address -> new Packet((short) address, Function.CONTROL, ControlAddress.DEL_CONTEXT,
+                            context));
+                }
+                break;
+        }
+    }
+
+    // Movements go to all the members at once if possible
+    private void move(IntFunction<Packet> builder) {
+        Bus bus = this.bus;
+        Integer broadcastAddress = this.broadcastAddress;
+
+        if (bus == null) {
+            return;
+        }
+
+        if (broadcastAddress != null) {
+            bus.submit(builder.apply(broadcastAddress), Priority.COMMAND, Bus.NO_REPLY);
+        } else {
+            program(builder);
+        }
+    }
+
+    private void stop() {
+        Bus bus = this.bus;
+
+        if (bus == null) {
+            return;
+        }
+
+        if (broadcastAddress != null) {
+            // A broadcast STOP doesn't replace moves, queued for individual members, so that they would
+            // be executed after it. Individual STOPs take care of that by themselves.
+            bus.cancelMoves(members);
+        }
+
+        move(address -> new Packet((short) address, Function.CONTROL, ControlAddress.STOP));
+    }
+
+    // Let handlers of the members know about a command, sent to them
+    private void notifyMembers(Consumer<CurtainHandler> action) {
+        Bridge bridge = getBridge();
+
+        if (bridge == null) {
+            return;
+        }
+
+        for (Thing thing : bridge.getThings()) {
+            ThingHandler handler = thing.getHandler();
+
+            if (handler instanceof CurtainHandler
+                    && members.contains((short) ((CurtainHandler) handler).getAddress())) {
+                action.accept((CurtainHandler) handler);
+            }
+        }
+    }
+
+    // Send the command to every member, one by one, and check that all of them have received it
+    private void program(IntFunction<Packet> builder) {
+        Bus bus = this.bus;
+
+        if (bus == null) {
+            return;
+        }
+
+        AtomicInteger failures = new AtomicInteger();
+        CompletableFuture<?>[] replies = new CompletableFuture<?>[members.size()];
+
+        for (int i = 0; i < replies.length; i++) {
+            short address = members.get(i);
+
+            replies[i] = bus.submit(builder.apply(address), Priority.COMMAND).handle((reply, error) -> {
+                if (error == null && reply == null) {
+                    // No bus, the bridge will report that
+                    return null;
+                }
+                if (error != null || !reply.isValid()) {
+                    logger.debug("Group member {} did not acknowledge the command", address);
+                    failures.incrementAndGet();
+                }
+                return null;
+            });
+        }
+
+        CompletableFuture.allOf(replies).thenRun(() -> {
+            int failed = failures.get();
+
+            if (failed != 0) {
+                logger.warn("{} of {} members of group {} did not respond", failed, replies.length,
+                        getThing().getUID());
+            }
+        });
+    }
+
+    @Override
+    public void initialize() {
+        Bridge bridge = getBridge();
+
+        if (bridge == null) {
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.HANDLER_INITIALIZING_ERROR, "Bridge not present");
+            return;
+        }
+
+        BridgeHandler handler = bridge.getHandler();
+
+        if (handler == null) {
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.HANDLER_INITIALIZING_ERROR, "Bridge has no handler");
+            return;
+        }
+
+        CurtainGroupConfiguration config = getConfigAs(CurtainGroupConfiguration.class);
+
+        try {
+            members = Bus.parseAddresses(config.members);
+        } catch (IllegalArgumentException e) {
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR,
+                    "Invalid member list: " + config.members);
+            return;
+        }
+
+        broadcastAddress = config.broadcast_address;
+        if (broadcastAddress == null) {
+            logger.debug("Group {} has no broadcast address, movements and contexts go to {} members one by one",
+                    getThing().getUID(), members.size());
+        }
+        bus = ((BusHandler) handler).getBus();
+
+        if (bridge.getStatus() == ThingStatus.ONLINE) {
+            updateStatus(ThingStatus.ONLINE);
+        } else {
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.BRIDGE_OFFLINE);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        bus = null;
+    }
+}
@@ -14,18 +14,27 @@ package org.openhab.binding.herzborg.internal;
 
 import static org.openhab.binding.herzborg.internal.HerzborgBindingConstants.*;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-
-import javax.xml.bind.DatatypeConverter;
+import java.util.function.Consumer;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.herzborg.internal.Bus.Priority;
 import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.ControlAddress;
 import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.DataAddress;
 import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Function;
 import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.RegisterRange;
+import org.openhab.binding.herzborg.internal.dto.MotorStatus;
+import org.openhab.binding.herzborg.internal.dto.SwitchSettings;
 import org.openhab.core.library.types.DecimalType;
 import org.openhab.core.library.types.OnOffType;
 import org.openhab.core.library.types.PercentType;
@@ -40,6 +49,7 @@ import org.openhab.core.thing.ThingStatusDetail;
 import org.openhab.core.thing.binding.BaseThingHandler;
 import org.openhab.core.thing.binding.BridgeHandler;
 import org.openhab.core.types.Command;
+import org.openhab.core.types.RefreshType;
 import org.openhab.core.types.UnDefType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,12 +61,157 @@ import org.slf4j.LoggerFactory;
  * @author Pavel Fedin - Initial contribution
  */
 @NonNullByDefault
-public class CurtainHandler extends BaseThingHandler {
+public class CurtainHandler extends BaseThingHandler implements PollScheduler.Pollable {
     private final Logger logger = LoggerFactory.getLogger(CurtainHandler.class);
 
     private CurtainConfiguration config = new CurtainConfiguration();
-    private @Nullable ScheduledFuture<?> pollFuture;
+    private @Nullable CompletableFuture<?> pendingPoll;
+    private @Nullable BusHandler busHandler;
     private @Nullable Bus bus;
+    private final CircuitBreaker health = new CircuitBreaker();
+
+    // Motion tracking for adaptive polling
+    private boolean fastPoll;
+    private int stablePolls;
+    private int lastPosition;
+    private boolean positionKnown;
+
+    // Position estimation between polls
+    private final MotionModel motion = new MotionModel();
+    private @Nullable ScheduledFuture<?> estimateJob; // Guarded by motion
+
+    // Last published register values by register address, used to suppress redundant state updates
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+    private final int[] published = new int[256];
+    private long lastRefresh; // System.nanoTime() based
+
+    // Replies younger than this are considered fresh enough to answer a REFRESH, in nanoseconds
+    private static final long FRESHNESS_WINDOW = TimeUnit.SECONDS.toNanos(1);
+
+    // Lower limits of poll intervals in milliseconds, as in the thing type. A zero interval would keep
+    // the scheduler spinning.
+    private static final long MIN_POLL_INTERVAL = 1000;
+    private static final long MIN_FAST_POLL_INTERVAL = 50;
+
+    // Mode and switch values are published as strings. There are only 256 of them, so they are made once.
+    private static final StringType[] BYTE_STATES = new StringType[256];
+
+    static {
+        for (int i = 0; i < BYTE_STATES.length; i++) {
+            BYTE_STATES[i] = new StringType(String.valueOf((byte) i));
+        }
+    }
+
+    /**
+     * A block of registers, read by a single request and decoded into a state. Concurrent reads of the same
+     * block share a single bus transaction, and the last state is kept for answering REFRESH commands.
+     * Only blocks with status registers are polled; settings don't change by themselves, so they are only
+     * read when the device comes up, on REFRESH and after a write.
+     */
+    private class RegisterBlock<T> {
+        private final RegisterRange range;
+        private final RegisterRange.Decoder<T> decoder;
+        private final boolean polled;
+        private final Consumer<T> stateHandler;
+        private final Consumer<T> publisher;
+        private final List<RegisterBlock<?>> self = Collections.singletonList(this);
+        // Requests never change, so we build them only once
+        private Packet request;
+        private @Nullable CompletableFuture<@Nullable Packet> inFlight;
+        private @Nullable T lastState;
+        private long lastStateTime;
+        // The block has to be read with the next poll
+        private volatile boolean stale;
+
+        RegisterBlock(RegisterRange range, RegisterRange.Decoder<T> decoder, boolean polled,
+                Consumer<T> stateHandler, Consumer<T> publisher) {
+            this.range = range;
+            this.decoder = decoder;
+            this.polled = polled;
+            this.stateHandler = stateHandler;
+            this.publisher = publisher;
+            this.request = range.buildRequest((short) config.address);
+        }
+
+        synchronized void reset() {
+            request = range.buildRequest((short) config.address);
+            inFlight = null;
+            lastState = null;
+            stale = true;
+        }
+
+        synchronized CompletableFuture<@Nullable Packet> read(Priority priority) {
+            CompletableFuture<@Nullable Packet> read = inFlight;
+
+            if (read != null && !read.isDone()) {
+                // Somebody is already reading the same thing, just join
+                return read;
+            }
+
+            read = doPacket(request, priority).thenApply(reply -> dispatch(reply, range, self));
+
+            inFlight = read;
+            return read;
+        }
+
+        // Take a reply to a READ of the given range, which covers this block
+        void accept(Packet reply, RegisterRange readRange) {
+            T state = decoder.decode(reply, readRange);
+
+            if (state == null) {
+                return;
+            }
+
+            synchronized (this) {
+                lastState = state;
+                lastStateTime = System.nanoTime();
+            }
+            stale = false;
+            stateHandler.accept(state);
+        }
+
+        // Publish the last known state again, or read it if there's none
+        void republish() {
+            T state;
+
+            synchronized (this) {
+                state = lastState;
+            }
+
+            if (state != null) {
+                publisher.accept(state);
+            } else {
+                stale = true;
+            }
+        }
+
+        void refresh() {
+            T fresh;
+
+            synchronized (this) {
+                fresh = (lastState != null && System.nanoTime() - lastStateTime < FRESHNESS_WINDOW) ? lastState
+                        : null;
+            }
+
+            // Make sure all our channels are republished
+            invalidate(range);
+
+            if (fresh != null) {
+                publisher.accept(fresh);
+            } else {
+                read(Priority.COMMAND);
+            }
+        }
+    }
+
+    private final RegisterBlock<MotorStatus> positionBlock = new RegisterBlock<>(MotorStatus.RANGE,
+            MotorStatus::decode, true, this::handleMotorStatus, this::publishMotorStatus);
+    private final RegisterBlock<SwitchSettings> extSwitchBlock = new RegisterBlock<>(SwitchSettings.RANGE,
+            SwitchSettings::decode, false, this::publishSwitchSettings, this::publishSwitchSettings);
+    private final List<RegisterBlock<?>> blocks = Arrays.asList(positionBlock, extSwitchBlock);
+    // What a regular poll reads, once everything is known
+    private List<RegisterRange> pollPlan = Collections.emptyList();
+    private List<Packet> pollRequests = Collections.emptyList();
 
     public CurtainHandler(Thing thing) {
         super(thing);
@@ -67,15 +222,23 @@ public class CurtainHandler extends BaseThingHandler {
         String ch = channelUID.getId();
         Packet pkt = null;
 
+        if (command instanceof RefreshType) {
+            refresh(ch);
+            return;
+        }
+
         switch (ch) {
             case CHANNEL_POSITION:
                 if (command instanceof UpDownType) {
                     pkt = buildPacket(Function.CONTROL,
                             (command == UpDownType.UP) ? ControlAddress.OPEN : ControlAddress.CLOSE);
+                    startMotion((command == UpDownType.UP) ? 100 : 0);
                 } else if (command instanceof StopMoveType) {
                     pkt = buildPacket(Function.CONTROL, ControlAddress.STOP);
+                    stopMotion();
                 } else if (command instanceof DecimalType) {
                     pkt = buildPacket(Function.CONTROL, ControlAddress.PERCENT, ((DecimalType) command).byteValue());
+                    startMotion(((DecimalType) command).intValue());
                 }
                 break;
             case CHANNEL_REVERSE:
@@ -101,15 +264,43 @@ public class CurtainHandler extends BaseThingHandler {
         }
 
         if (pkt != null) {
-            final Packet p = pkt;
-            scheduler.schedule(() -> {
-                Packet reply = doPacket(p);
+            CompletableFuture<@Nullable Packet> result = doPacket(pkt, Priority.COMMAND);
+            RegisterBlock<?> block = (pkt.getFunction() == Function.WRITE) ? findBlock(pkt.getDataAddress()) : null;
+
+            if (block != null) {
+                // Read the setting back, so that the channel shows what the device has really accepted.
+                // If this fails, the next poll takes care.
+                block.stale = true;
+                result.thenAccept(reply -> {
+                    if (reply != null) {
+                        block.read(Priority.COMMAND);
+                    }
+                });
+            }
+        }
+    }
 
-                if (reply != null) {
-                    logger.trace("Function {} addr {} reply {}", p.getFunction(), p.getDataAddress(),
-                            DatatypeConverter.printHexBinary(reply.getBuffer()));
-                }
-            }, 0, TimeUnit.MILLISECONDS);
+    private @Nullable RegisterBlock<?> findBlock(byte register) {
+        for (RegisterBlock<?> block : blocks) {
+            if (block.range.contains(register)) {
+                return block;
+            }
+        }
+        return null;
+    }
+
+    private void refresh(String channel) {
+        switch (channel) {
+            case CHANNEL_POSITION:
+            case CHANNEL_REVERSE:
+            case CHANNEL_HAND_START:
+            case CHANNEL_MODE:
+                positionBlock.refresh();
+                break;
+            case CHANNEL_EXT_SWITCH:
+            case CHANNEL_HV_SWITCH:
+                extSwitchBlock.refresh();
+                break;
         }
     }
 
@@ -141,84 +332,413 @@ public class CurtainHandler extends BaseThingHandler {
             return;
         }
 
-        bus = ((BusHandler) handler).getBus();
+        BusHandler busHandler = (BusHandler) handler;
+
+        bus = busHandler.getBus();
         config = getConfigAs(CurtainConfiguration.class);
+        for (RegisterBlock<?> block : blocks) {
+            block.reset();
+        }
+        // Stale settings are added by poll() as needed; they must not count as regular bus load
+        pollPlan = planPoll(false);
+        pollRequests = buildRequests(pollPlan);
+
+        synchronized (this) {
+            fastPoll = false;
+            positionKnown = false;
+        }
+        synchronized (published) {
+            Arrays.fill(published, UNKNOWN);
+            lastRefresh = System.nanoTime();
+        }
 
         updateStatus(ThingStatus.UNKNOWN);
         logger.trace("Successfully initialized, starting poll");
-        pollFuture = scheduler.scheduleWithFixedDelay(this::poll, 1, config.poll_interval, TimeUnit.SECONDS);
+        this.busHandler = busHandler;
+        busHandler.registerDevice(this);
     }
 
     @Override
     public void dispose() {
-        stopPoll();
+        BusHandler busHandler = this.busHandler;
+
+        stopEstimates();
+
+        if (busHandler != null) {
+            busHandler.unregisterDevice(this);
+            this.busHandler = null;
+        }
+    }
+
+    @Override
+    public synchronized long getPollInterval() {
+        long pollInterval = Math.max(config.poll_interval * 1000L, MIN_POLL_INTERVAL);
+
+        if (!fastPoll) {
+            return pollInterval;
+        }
+
+        long fastPollInterval = Math.max(config.fast_poll_interval, MIN_FAST_POLL_INTERVAL);
+        long remaining = (config.estimate_interval > 0) ? motion.getRemainingTime(System.nanoTime()) : -1;
+
+        if (remaining > 0) {
+            // The model follows the motor, only check on it once in a while and at the end of travel
+            return Math.max(fastPollInterval, Math.min(TimeUnit.NANOSECONDS.toMillis(remaining), pollInterval));
+        }
+
+        return fastPollInterval;
+    }
+
+    int getAddress() {
+        return config.address;
+    }
+
+    /**
+     * The motor is expected to move, poll faster in order to follow it. Also called by a group,
+     * which has sent a movement to the motor.
+     *
+     * @param target requested position or -1 if not known, for example for a context
+     */
+    void startMotion(int target) {
+        boolean changed;
+
+        if (target >= 0) {
+            motion.moveTo(System.nanoTime(), target);
+        }
+
+        synchronized (this) {
+            stablePolls = 0;
+            changed = !fastPoll;
+            fastPoll = true;
+        }
+
+        if (changed) {
+            pollIntervalChanged();
+        }
+
+        startEstimates();
+    }
+
+    /**
+     * A STOP has been sent to the motor, freeze the position estimate
+     */
+    void stopMotion() {
+        motion.stop(System.nanoTime());
     }
 
-    private void stopPoll() {
-        if (pollFuture != null) {
-            pollFuture.cancel(true);
-            pollFuture = null;
+    private void updateMotion(int position, int mode) {
+        boolean changed = false;
+
+        motion.update(System.nanoTime(), position, mode);
+
+        synchronized (this) {
+            if (positionKnown && position != lastPosition) {
+                stablePolls = 0;
+                changed = !fastPoll;
+                fastPoll = true;
+            } else if (fastPoll && ++stablePolls >= config.stable_polls) {
+                logger.trace("Position is stable, slowing down the poll");
+                changed = true;
+                fastPoll = false;
+            }
+
+            lastPosition = position;
+            positionKnown = true;
+        }
+
+        if (changed) {
+            pollIntervalChanged();
+        }
+
+        if (motion.isMoving()) {
+            startEstimates();
         }
     }
 
-    private @Nullable synchronized Packet doPacket(Packet pkt) {
+    // Start publishing position estimates, if the motor is moving and we know how fast
+    private void startEstimates() {
+        BusHandler busHandler = this.busHandler;
+
+        if (busHandler == null || config.estimate_interval <= 0 || motion.getEstimate(System.nanoTime()) < 0) {
+            return;
+        }
+
+        synchronized (motion) {
+            if (estimateJob == null) {
+                estimateJob = busHandler.getExecutor().scheduleWithFixedDelay(this::publishEstimate, 0,
+                        config.estimate_interval, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void stopEstimates() {
+        synchronized (motion) {
+            ScheduledFuture<?> job = estimateJob;
+
+            if (job != null) {
+                job.cancel(false);
+                estimateJob = null;
+            }
+        }
+    }
+
+    private void publishEstimate() {
+        long now = System.nanoTime();
+        int estimate = motion.getEstimate(now);
+
+        if (estimate < 0) {
+            // Stopped, from now on real readings take over
+            stopEstimates();
+            return;
+        }
+
+        if (isChanged(DataAddress.POSITION, estimate)) {
+            updateState(CHANNEL_POSITION, new PercentType(estimate));
+        }
+
+        if (motion.checkArrival(now)) {
+            // The motor should have stopped by now, see where it really is
+            logger.trace("Estimated end of travel reached, verifying position");
+            positionBlock.read(Priority.POLL);
+        }
+    }
+
+    // Must not be called with our lock held, otherwise we may deadlock with the scheduler
+    private void pollIntervalChanged() {
+        BusHandler busHandler = this.busHandler;
+
+        if (busHandler != null) {
+            busHandler.pollIntervalChanged(this);
+        }
+    }
+
+    @Override
+    public List<Packet> getPollRequests() {
+        return pollRequests;
+    }
+
+    private CompletableFuture<@Nullable Packet> doPacket(Packet pkt, Priority priority) {
         Bus bus = this.bus;
 
         if (bus == null) {
             // This is an impossible situation but Eclipse forces us to handle it
             logger.warn("No Bridge sending commands");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return bus.submit(pkt, priority).handle(this::handleReply);
+    }
+
+    private synchronized @Nullable Packet handleReply(@Nullable Packet reply, @Nullable Throwable error) {
+        if (error instanceof CancellationException) {
+            // The command has been superseded by a newer one, this is not an error
             return null;
         }
 
-        try {
-            Packet reply = bus.doPacket(pkt);
+        if (error != null) {
+            Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause()
+                    : error;
+            health.failure();
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR,
+                    cause.getMessage() + " (" + health.getDescription() + ")");
+            return null;
+        }
+
+        if (reply == null) {
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.BRIDGE_OFFLINE);
+            return null;
+        }
+
+        // The bus only delivers valid replies
+        health.success();
+        updateStatus(ThingStatus.ONLINE);
+        return reply;
+    }
+
+    @Override
+    public void poll() {
+        CompletableFuture<?> pending = pendingPoll;
+
+        if (pending != null && !pending.isDone()) {
+            // The bus is busy, the previous poll is still in the queue
+            return;
+        }
+
+        if (!health.allowPoll()) {
+            // The device is dead, don't waste bus time on it. Commands still go through.
+            return;
+        }
 
-            if (reply == null) {
-                updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.BRIDGE_OFFLINE);
-                return null;
+        List<RegisterRange> plan = pollPlan;
+
+        for (RegisterBlock<?> block : blocks) {
+            if (!block.polled && block.stale) {
+                // Some settings need reading this time
+                plan = planPoll(true);
+                break;
             }
+        }
 
-            if (reply.isValid()) {
-                updateStatus(ThingStatus.ONLINE);
-                return reply;
-            } else {
-                updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR,
-                        "Invalid response received: " + DatatypeConverter.printHexBinary(reply.getBuffer()));
-                bus.flush();
+        pendingPoll = readPlan(plan, 0);
+    }
+
+    /**
+     * Plan reading of polled blocks
+     *
+     * @param withStale also read other blocks, which need reading
+     */
+    private List<RegisterRange> planPoll(boolean withStale) {
+        List<RegisterRange> ranges = new ArrayList<>(blocks.size());
+
+        for (RegisterBlock<?> block : blocks) {
+            if (block.polled || (withStale && block.stale)) {
+                ranges.add(block.range);
             }
+        }
+
+        return ReadPlanner.plan(ranges);
+    }
 
-        } catch (IOException e) {
-            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR, e.getMessage());
+    private List<Packet> buildRequests(List<RegisterRange> plan) {
+        List<Packet> requests = new ArrayList<>(plan.size());
+
+        for (RegisterRange range : plan) {
+            requests.add(range.buildRequest((short) config.address));
         }
 
-        return null;
+        return requests;
+    }
+
+    // Read the planned ranges one by one. Only continue if the device has answered,
+    // so that a dead device costs a single timeout.
+    private CompletableFuture<@Nullable Packet> readPlan(List<RegisterRange> plan, int index) {
+        if (index == plan.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<@Nullable Packet> read = read(plan.get(index), Priority.POLL);
+
+        if (index + 1 == plan.size()) {
+            return read;
+        }
+        return read.thenCompose(reply -> reply != null ? readPlan(plan, index + 1)
+                : CompletableFuture.<@Nullable Packet> completedFuture(null));
+    }
+
+    private CompletableFuture<@Nullable Packet> read(RegisterRange range, Priority priority) {
+        for (RegisterBlock<?> block : blocks) {
+            if (block.range == range) {
+                // Not merged with anything, let the block share the read with others
+                return block.read(priority);
+            }
+        }
+
+        return doPacket(range.buildRequest((short) config.address), priority)
+                .thenApply(reply -> dispatch(reply, range, blocks));
     }
 
-    private void poll() {
-        Packet reply = doPacket(buildPacket(Function.READ, DataAddress.POSITION, 4));
+    // Decode a reply to a READ of the given range into all the blocks it covers
+    private @Nullable Packet dispatch(@Nullable Packet reply, RegisterRange range, List<RegisterBlock<?>> targets) {
+        if (reply == null) {
+            return null;
+        }
 
-        if (reply != null) {
-            byte position = reply.getData(0);
-            byte reverse = reply.getData(1);
-            byte handStart = reply.getData(2);
-            byte mode = reply.getData(3);
+        if (!range.matches(reply)) {
+            logger.debug("Unexpected reply length {} for {} registers", reply.getBuffer().length, range.getCount());
+            return null;
+        }
+
+        for (RegisterBlock<?> block : targets) {
+            if (range.contains(block.range)) {
+                block.accept(reply, range);
+            }
+        }
 
+        return reply;
+    }
+
+    private void handleMotorStatus(MotorStatus status) {
+        boolean refresh = false;
+
+        updateMotion(status.position, status.mode);
+
+        synchronized (published) {
+            long now = System.nanoTime();
+
+            if (config.refresh_interval > 0
+                    && now - lastRefresh >= TimeUnit.SECONDS.toNanos(config.refresh_interval)) {
+                // Time to republish everything
+                Arrays.fill(published, UNKNOWN);
+                lastRefresh = now;
+                refresh = true;
+            }
+        }
+
+        publishMotorStatus(status);
+
+        if (refresh) {
+            // Settings aren't polled, republish what we know
+            for (RegisterBlock<?> block : blocks) {
+                if (!block.polled) {
+                    block.republish();
+                }
+            }
+        }
+    }
+
+    private void publishMotorStatus(MotorStatus status) {
+        if (isChanged(DataAddress.POSITION, status.position)) {
             // If calibration has been lost, position is reported as -1.
-            updateState(CHANNEL_POSITION,
-                    (position > 100 || position < 0) ? UnDefType.UNDEF : new PercentType(position));
-            updateState(CHANNEL_REVERSE, reverse != 0 ? OnOffType.ON : OnOffType.OFF);
-            updateState(CHANNEL_HAND_START, handStart == 0 ? OnOffType.ON : OnOffType.OFF);
-            updateState(CHANNEL_MODE, new StringType(String.valueOf(mode)));
+            updateState(CHANNEL_POSITION, status.isCalibrated() ? new PercentType(status.position) : UnDefType.UNDEF);
+        }
+        if (isChanged(DataAddress.DEFAULT_DIR, status.reverse ? 1 : 0)) {
+            updateState(CHANNEL_REVERSE, status.reverse ? OnOffType.ON : OnOffType.OFF);
+        }
+        if (isChanged(DataAddress.HAND_START, status.handStart ? 1 : 0)) {
+            updateState(CHANNEL_HAND_START, status.handStart ? OnOffType.ON : OnOffType.OFF);
         }
+        if (isChanged(DataAddress.MODE, status.mode)) {
+            updateState(CHANNEL_MODE, toStringType(status.mode));
+        }
+    }
 
-        Packet extReply = doPacket(buildPacket(Function.READ, DataAddress.EXT_SWITCH, 2));
+    private void publishSwitchSettings(SwitchSettings settings) {
+        if (isChanged(DataAddress.EXT_SWITCH, settings.extSwitch)) {
+            updateState(CHANNEL_EXT_SWITCH, toStringType(settings.extSwitch));
+        }
+        if (isChanged(DataAddress.EXT_HV_SWITCH, settings.hvSwitch)) {
+            updateState(CHANNEL_HV_SWITCH, toStringType(settings.hvSwitch));
+        }
+    }
+
+    private static StringType toStringType(int value) {
+        return BYTE_STATES[value & 0xFF];
+    }
+
+    // Forget published values of the given registers, so that they are published again
+    private void invalidate(RegisterRange range) {
+        int first = Byte.toUnsignedInt(range.getFirst());
+
+        synchronized (published) {
+            Arrays.fill(published, first, first + range.getCount(), UNKNOWN);
+        }
+    }
+
+    // Check whether a register value differs from the published one, and remember it if so
+    private boolean isChanged(byte register, int value) {
+        int index = Byte.toUnsignedInt(register);
 
-        if (extReply != null) {
-            byte extSwitch = extReply.getData(0);
-            byte hvSwitch = extReply.getData(1);
+        synchronized (published) {
+            if (published[index] != value) {
+                published[index] = value;
+                return true;
+            }
+        }
 
-            updateState(CHANNEL_EXT_SWITCH, new StringType(String.valueOf(extSwitch)));
-            updateState(CHANNEL_HV_SWITCH, new StringType(String.valueOf(hvSwitch)));
+        Bus bus = this.bus;
+        if (bus != null) {
+            bus.getMetrics().recordSuppressedUpdate();
         }
+        return false;
     }
 }
@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link FrameCapture} records raw bus traffic into a compact binary file, for reproducing field
+ * issues offline with {@link ReplayBus}. Recording only copies the data into a queue; the file is
+ * written by a separate thread. If the writer can't keep up, records are dropped rather than
+ * slowing down the bus.
+ * <p>
+ * File format: a header of "HZBC" magic and a version byte, followed by records. Every record is
+ * a type byte, a 64-bit timestamp, a 16-bit data length and the data itself, all big-endian.
+ * Every capture session starts with a {@link #SESSION} record, which carries wall clock time in
+ * milliseconds. TX and RX records carry nanoseconds since the start of the session.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class FrameCapture implements Closeable {
+    private final Logger logger = LoggerFactory.getLogger(FrameCapture.class);
+
+    public static final byte TX = 0;
+    public static final byte RX = 1;
+    public static final byte SESSION = 2;
+
+    private static final int MAGIC = 0x485A4243; // "HZBC"
+    private static final byte VERSION = 1;
+    private static final int RECORD_HEADER = 1 + 8 + 2;
+    private static final int QUEUE_SIZE = 4096;
+    private static final int BUFFER_SIZE = 65536;
+    // How long close() waits for the writer to drain the queue, in milliseconds
+    private static final long CLOSE_TIMEOUT = 1000;
+
+    private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final LongAdder dropped = new LongAdder();
+    private final OutputStream out;
+    private final Thread writer;
+    private final long start = System.nanoTime();
+    private volatile boolean closed;
+
+    /**
+     * A single captured record
+     */
+    public static class Record {
+        public final byte type;
+        public final long time;
+        public final byte[] data;
+
+        Record(byte type, long time, byte[] data) {
+            this.type = type;
+            this.time = time;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Start a capture session, appending to the given file
+     *
+     * @param file capture file; created if it doesn't exist
+     * @param name name of the bus, used for the writer thread
+     */
+    public FrameCapture(Path file, String name) throws IOException {
+        boolean empty = !Files.exists(file) || Files.size(file) == 0;
+
+        out = new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND), BUFFER_SIZE);
+
+        if (empty) {
+            out.write(ByteBuffer.allocate(5).putInt(MAGIC).put(VERSION).array());
+        }
+        out.write(encode(SESSION, System.currentTimeMillis(), new byte[0], 0, 0));
+
+        writer = new BusThreadFactory(name + "-capture").newThread(this::run);
+        writer.start();
+    }
+
+    private static byte[] encode(byte type, long time, byte[] data, int offset, int length) {
+        return ByteBuffer.allocate(RECORD_HEADER + length).put(type).putLong(time).putShort((short) length)
+                .put(data, offset, length).array();
+    }
+
+    /**
+     * Record a piece of traffic. Never blocks.
+     *
+     * @param type {@link #TX} or {@link #RX}
+     */
+    public void record(byte type, byte[] data, int offset, int length) {
+        if (closed) {
+            return;
+        }
+
+        if (!queue.offer(encode(type, System.nanoTime() - start, data, offset, length))) {
+            dropped.increment();
+        }
+    }
+
+    private void run() {
+        try {
+            while (!closed || !queue.isEmpty()) {
+                byte[] record = queue.poll(100, TimeUnit.MILLISECONDS);
+
+                if (record == null) {
+                    continue;
+                }
+
+                // Write out everything we have, and flush once the queue is empty
+                do {
+                    out.write(record);
+                } while ((record = queue.poll()) != null);
+                out.flush();
+            }
+        } catch (IOException e) {
+            logger.warn("Error writing capture file: {}", e.getMessage());
+            closed = true;
+        } catch (InterruptedException e) {
+            // close() got tired of waiting
+        }
+
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.debug("Error closing capture file: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+
+        try {
+            writer.join(CLOSE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (writer.isAlive()) {
+            writer.interrupt();
+        }
+
+        long count = dropped.sum();
+        if (count != 0) {
+            logger.warn("{} capture records have been dropped", count);
+        }
+    }
+
+    /**
+     * Read a capture file
+     *
+     * @return all records from the file
+     * @throws IOException if the file can't be read or is not a capture
+     */
+    public static List<Record> load(Path file) throws IOException {
+        List<Record> records = new ArrayList<>();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a capture file: " + file);
+            }
+
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported capture version " + version);
+            }
+
+            while (true) {
+                byte type;
+
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                long time = in.readLong();
+                byte[] data = new byte[Short.toUnsignedInt(in.readShort())];
+
+                in.readFully(data);
+                records.add(new Record(type, time, data));
+            }
+        } catch (EOFException e) {
+            // A truncated last record, for example after a crash. Everything before it is still good.
+        }
+
+        return records;
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Function;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
+
+/**
+ * The {@link FrameDecoder} incrementally assembles a reply frame from received bytes. It looks for
+ * a start byte, validates the header against the request, then validates length and CRC16. Garbage
+ * is skipped byte by byte, so the decoder recovers on the very next good frame without flushing
+ * the port. Everything rejected, garbage as well as frames with bad CRC, is recorded into the wire log,
+ * if there is one.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class FrameDecoder {
+    private static final int HEADER_LENGTH = 5;
+
+    private final byte[] buffer = new byte[Packet.MAX_LENGTH * 2];
+    private int length;
+    // Number of bytes at the head of the buffer, which have already been recorded as a part of a bad frame
+    private int logged;
+    private final @Nullable WireLog wireLog;
+
+    private short expectedAddress;
+    private byte expectedFunction;
+    private int expectedLength;
+
+    private final LongAdder resyncCount = new LongAdder();
+    private final LongAdder discardedBytes = new LongAdder();
+    private final LongAdder crcErrors = new LongAdder();
+
+    public FrameDecoder() {
+        this(null);
+    }
+
+    /**
+     * @param wireLog log to record rejected data into
+     */
+    public FrameDecoder(@Nullable WireLog wireLog) {
+        this.wireLog = wireLog;
+    }
+
+    /**
+     * Prepare for receiving a reply to the given request. Leftovers of previous transactions are dropped.
+     *
+     * @param request request being sent
+     */
+    public void expect(Packet request) {
+        discard(length);
+        expectedAddress = request.getDeviceAddress();
+        expectedFunction = request.getFunction();
+        expectedLength = request.getReplyLength();
+    }
+
+    /**
+     * Feed received bytes into the decoder
+     *
+     * @return reply frame, if it has been completed by these bytes, otherwise null
+     */
+    public @Nullable Packet feed(byte[] data, int offset, int count) {
+        if (count > buffer.length - length) {
+            // We can't be that much out of sync; drop the oldest data
+            discard(Math.min(length, count - (buffer.length - length)));
+            if (count > buffer.length) {
+                discardedBytes.add(count - buffer.length);
+                offset += count - buffer.length;
+                count = buffer.length;
+            }
+        }
+
+        System.arraycopy(data, offset, buffer, length, count);
+        length += count;
+
+        return decode();
+    }
+
+    private @Nullable Packet decode() {
+        while (length > 0) {
+            if (buffer[0] != Packet.START) {
+                resync();
+                continue;
+            }
+
+            if (length < HEADER_LENGTH) {
+                return null;
+            }
+
+            short address = (short) (Byte.toUnsignedInt(buffer[1]) | (Byte.toUnsignedInt(buffer[2]) << 8));
+            int frameLength = (buffer[3] == Function.READ) ? Packet.MIN_LENGTH + Byte.toUnsignedInt(buffer[4])
+                    : expectedLength;
+
+            if (address != expectedAddress || buffer[3] != expectedFunction || frameLength != expectedLength) {
+                // Not our frame, or a random START byte in the middle of garbage
+                resync();
+                continue;
+            }
+
+            if (length < frameLength) {
+                return null;
+            }
+
+            if (Packet.crc16(buffer, 0, frameLength - 2) != (Byte.toUnsignedInt(buffer[frameLength - 2])
+                    | (Byte.toUnsignedInt(buffer[frameLength - 1]) << 8))) {
+                crcErrors.increment();
+                record(0, frameLength);
+                logged = frameLength;
+                resync();
+                continue;
+            }
+
+            byte[] frame = new byte[frameLength];
+            System.arraycopy(buffer, 0, frame, 0, frameLength);
+            remove(frameLength);
+            return new Packet(frame);
+        }
+
+        return null;
+    }
+
+    // Drop the first byte and everything up to the next START byte
+    private void resync() {
+        int start = 1;
+
+        while (start < length && buffer[start] != Packet.START) {
+            start++;
+        }
+
+        resyncCount.increment();
+        discard(start);
+    }
+
+    private void discard(int count) {
+        if (count > 0) {
+            discardedBytes.add(count);
+            if (count > logged) {
+                record(logged, count - logged);
+            }
+            remove(count);
+        }
+    }
+
+    private void record(int offset, int count) {
+        WireLog wireLog = this.wireLog;
+
+        if (wireLog != null) {
+            wireLog.record(WireLog.RX, expectedAddress, buffer, offset, count, 0, false);
+        }
+    }
+
+    private void remove(int count) {
+        length -= count;
+        logged = Math.max(logged - count, 0);
+        System.arraycopy(buffer, count, buffer, 0, length);
+    }
+
+    public long getResyncCount() {
+        return resyncCount.sum();
+    }
+
+    public long getDiscardedBytes() {
+        return discardedBytes.sum();
+    }
+
+    public long getCrcErrors() {
+        return crcErrors.sum();
+    }
+}
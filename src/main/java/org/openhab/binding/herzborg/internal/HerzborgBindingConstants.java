@@ -28,7 +28,14 @@ public class HerzborgBindingConstants {
 
     // List of all Thing Type UIDs
     public static final ThingTypeUID THING_TYPE_SERIAL_BUS = new ThingTypeUID(BINDING_ID, "serial_bus");
+    public static final ThingTypeUID THING_TYPE_TCP_BUS = new ThingTypeUID(BINDING_ID, "tcp_bus");
+    public static final ThingTypeUID THING_TYPE_SIMULATED_BUS = new ThingTypeUID(BINDING_ID, "simulated_bus");
+    public static final ThingTypeUID THING_TYPE_REPLAY_BUS = new ThingTypeUID(BINDING_ID, "replay_bus");
     public static final ThingTypeUID THING_TYPE_CURTAIN = new ThingTypeUID(BINDING_ID, "curtain");
+    public static final ThingTypeUID THING_TYPE_CURTAIN_GROUP = new ThingTypeUID(BINDING_ID, "curtain_group");
+
+    // Thing configuration parameters
+    public static final String PROPERTY_ADDRESS = "address";
 
     // List of all Channel ids
     public static final String CHANNEL_POSITION = "position";
@@ -37,4 +44,25 @@ public class HerzborgBindingConstants {
     public static final String CHANNEL_HAND_START = "handStart";
     public static final String CHANNEL_EXT_SWITCH = "extSwitch";
     public static final String CHANNEL_HV_SWITCH = "hvSwitch";
+
+    // Curtain group channels
+    public static final String CHANNEL_STORE_CONTEXT = "storeContext";
+    public static final String CHANNEL_RUN_CONTEXT = "runContext";
+    public static final String CHANNEL_DELETE_CONTEXT = "deleteContext";
+
+    // Bus statistics channels, all in one group
+    public static final String CHANNEL_GROUP_STATISTICS = "statistics";
+    public static final String CHANNEL_TRANSACTIONS = "transactions";
+    public static final String CHANNEL_LATENCY_P50 = "latencyP50";
+    public static final String CHANNEL_LATENCY_P95 = "latencyP95";
+    public static final String CHANNEL_LATENCY_P99 = "latencyP99";
+    public static final String CHANNEL_TIMEOUTS = "timeouts";
+    public static final String CHANNEL_CRC_ERRORS = "crcErrors";
+    public static final String CHANNEL_RESYNCS = "resyncs";
+    public static final String CHANNEL_COALESCED = "coalescedCommands";
+    public static final String CHANNEL_QUEUE_DEPTH = "queueDepth";
+    public static final String CHANNEL_UTILISATION = "utilisation";
+    public static final String CHANNEL_SUPPRESSED_UPDATES = "suppressedUpdates";
+    public static final String CHANNEL_RECONNECTS = "reconnects";
+    public static final String CHANNEL_RECOVERY_TIME = "recoveryTime";
 }
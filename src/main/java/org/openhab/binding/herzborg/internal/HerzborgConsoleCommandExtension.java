@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.io.console.Console;
+import org.openhab.core.io.console.extensions.AbstractConsoleCommandExtension;
+import org.openhab.core.io.console.extensions.ConsoleCommandExtension;
+import org.openhab.core.thing.Thing;
+import org.openhab.core.thing.ThingRegistry;
+import org.openhab.core.thing.ThingUID;
+import org.openhab.core.thing.binding.ThingHandler;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+/**
+ * The {@link HerzborgConsoleCommandExtension} provides diagnostic console commands.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+@Component(service = ConsoleCommandExtension.class)
+public class HerzborgConsoleCommandExtension extends AbstractConsoleCommandExtension {
+    private static final String WIRELOG = "wirelog";
+    private static final String POLLING = "polling";
+
+    private final ThingRegistry thingRegistry;
+
+    @Activate
+    public HerzborgConsoleCommandExtension(final @Reference ThingRegistry thingRegistry) {
+        super("herzborg", "Herzborg binding diagnostics.");
+        this.thingRegistry = thingRegistry;
+    }
+
+    @Override
+    public void execute(String[] args, Console console) {
+        if (args.length < 1 || args.length > 2 || !(WIRELOG.equals(args[0]) || POLLING.equals(args[0]))) {
+            printUsage(console);
+            return;
+        }
+
+        Collection<Thing> bridges;
+
+        if (args.length == 2) {
+            Thing thing = thingRegistry.get(new ThingUID(args[1]));
+
+            if (thing == null || getBusHandler(thing) == null) {
+                console.println("No Herzborg bus bridge " + args[1]);
+                return;
+            }
+            bridges = Collections.singletonList(thing);
+        } else {
+            bridges = thingRegistry.getAll();
+        }
+
+        for (Thing thing : bridges) {
+            BusHandler handler = getBusHandler(thing);
+
+            if (handler != null) {
+                console.println(thing.getUID().getAsString() + ":");
+                if (WIRELOG.equals(args[0])) {
+                    printWireLog(handler, console);
+                } else {
+                    printPolling(handler, console);
+                }
+            }
+        }
+    }
+
+    private static void printWireLog(BusHandler handler, Console console) {
+        for (String line : handler.getBus().getWireLog().dump()) {
+            console.println("  " + line);
+        }
+    }
+
+    private static void printPolling(BusHandler handler, Console console) {
+        for (Thing thing : handler.getThing().getThings()) {
+            ThingHandler device = thing.getHandler();
+
+            if (device instanceof PollScheduler.Pollable) {
+                PollScheduler.Pollable pollable = (PollScheduler.Pollable) device;
+                long effective = handler.getEffectiveInterval(pollable);
+
+                if (effective >= 0) {
+                    console.println("  " + thing.getUID().getAsString() + ": requested " + pollable.getPollInterval()
+                            + " ms, polled every " + effective + " ms");
+                }
+            }
+        }
+    }
+
+    private static @Nullable BusHandler getBusHandler(Thing thing) {
+        ThingHandler handler = thing.getHandler();
+        return (handler instanceof BusHandler) ? (BusHandler) handler : null;
+    }
+
+    @Override
+    public List<String> getUsages() {
+        return Arrays.asList(
+                buildCommandUsage(WIRELOG + " [<bridgeUID>]",
+                        "show the last frames on the bus of the given bridge, or of all bridges"),
+                buildCommandUsage(POLLING + " [<bridgeUID>]",
+                        "show requested and actual poll intervals of devices on the given bridge, or on all bridges"));
+    }
+}
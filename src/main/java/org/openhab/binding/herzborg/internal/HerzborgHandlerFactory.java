@@ -41,8 +41,9 @@ import org.osgi.service.component.annotations.Reference;
 @NonNullByDefault
 @Component(configurationPid = "binding.herzborg", service = ThingHandlerFactory.class)
 public class HerzborgHandlerFactory extends BaseThingHandlerFactory {
-    private static final Set<ThingTypeUID> SUPPORTED_THING_TYPES_UIDS = Collections
-            .unmodifiableSet(Stream.of(THING_TYPE_SERIAL_BUS, THING_TYPE_CURTAIN).collect(Collectors.toSet()));;
+    private static final Set<ThingTypeUID> SUPPORTED_THING_TYPES_UIDS = Collections.unmodifiableSet(
+            Stream.of(THING_TYPE_SERIAL_BUS, THING_TYPE_TCP_BUS, THING_TYPE_SIMULATED_BUS, THING_TYPE_REPLAY_BUS,
+                    THING_TYPE_CURTAIN, THING_TYPE_CURTAIN_GROUP).collect(Collectors.toSet()));
 
     private final SerialPortManager serialPortManager;
 
@@ -62,8 +63,16 @@ public class HerzborgHandlerFactory extends BaseThingHandlerFactory {
 
         if (THING_TYPE_CURTAIN.equals(thingTypeUID)) {
             return new CurtainHandler(thing);
+        } else if (THING_TYPE_CURTAIN_GROUP.equals(thingTypeUID)) {
+            return new CurtainGroupHandler(thing);
         } else if (THING_TYPE_SERIAL_BUS.equals(thingTypeUID)) {
             return new SerialBusHandler((Bridge) thing, serialPortManager);
+        } else if (THING_TYPE_TCP_BUS.equals(thingTypeUID)) {
+            return new TcpBusHandler((Bridge) thing);
+        } else if (THING_TYPE_SIMULATED_BUS.equals(thingTypeUID)) {
+            return new SimulatedBusHandler((Bridge) thing);
+        } else if (THING_TYPE_REPLAY_BUS.equals(thingTypeUID)) {
+            return new ReplayBusHandler((Bridge) thing);
         }
 
         return null;
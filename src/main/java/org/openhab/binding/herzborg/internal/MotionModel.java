@@ -0,0 +1,232 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * The {@link MotionModel} learns how fast a curtain motor travels in either direction from observed
+ * position samples, and estimates the current position while the motor is moving.
+ * Speed is measured over a whole run, from the first sample where the motor is seen moving
+ * to the last one, because a single poll period is too short for a precise measurement.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+class MotionModel {
+    // Motor modes, as reported by the device
+    private static final int MODE_OPENING = 1;
+    private static final int MODE_CLOSING = 2;
+    // Weight of a new measurement of the speed
+    private static final double SMOOTHING = 0.3;
+    // Runs shorter than this, in percents, are too imprecise to learn from
+    private static final int MIN_DISTANCE = 5;
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final int NONE = -1;
+
+    // Learned speeds in percents per second, 0 if unknown
+    private double openSpeed;
+    private double closeSpeed;
+
+    // The last known point, which is either a real reading or the moment a movement was requested
+    private double position = NONE;
+    private long time;
+    private int direction; // Expected direction: +1 opening, -1 closing, 0 stopped
+    private int target = NONE;
+    private boolean arrived;
+
+    // The current run, for measuring the speed. Only real readings go here, commands don't.
+    private int runDirection;
+    private int runStartPosition;
+    private long runStartTime;
+    private int runPosition;
+    private long runTime;
+    private boolean running;
+
+    /**
+     * Take a real reading from the device
+     *
+     * @param now time of the reading, System.nanoTime() based
+     * @param position reported position
+     * @param mode reported motor mode
+     */
+    synchronized void update(long now, int position, int mode) {
+        int direction = (mode == MODE_OPENING) ? 1 : (mode == MODE_CLOSING) ? -1 : 0;
+
+        if (position < 0 || position > 100) {
+            // Not calibrated, nothing to learn from
+            direction = 0;
+            position = NONE;
+        }
+
+        if (running && direction != runDirection) {
+            endRun();
+            if (direction == 0) {
+                // The movement is over, whatever it was
+                target = NONE;
+            }
+        }
+
+        if (direction != 0 && !running) {
+            running = true;
+            runDirection = direction;
+            runStartPosition = position;
+            runStartTime = now;
+        }
+        if (running) {
+            runPosition = position;
+            runTime = now;
+        }
+
+        if (target != NONE
+                && (position == target || (direction != 0 && direction != Integer.signum(target - position)))) {
+            // Either done, or somebody else moves the motor
+            target = NONE;
+        }
+
+        this.position = position;
+        this.time = now;
+        this.direction = direction;
+        this.arrived = false;
+    }
+
+    /**
+     * A movement has been requested, start estimating right away
+     *
+     * @param now time of the request, System.nanoTime() based
+     * @param target requested position
+     */
+    synchronized void moveTo(long now, int target) {
+        double current = estimate(now);
+
+        if (current == NONE) {
+            return;
+        }
+
+        this.position = current;
+        this.time = now;
+        this.target = target;
+        this.direction = Integer.signum(target - (int) Math.round(current));
+        this.arrived = false;
+    }
+
+    /**
+     * A stop has been requested, freeze the estimate. The run ends with the last reading taken before.
+     */
+    synchronized void stop(long now) {
+        double current = estimate(now);
+
+        if (current != NONE) {
+            position = current;
+            time = now;
+        }
+        if (running) {
+            endRun();
+        }
+        direction = 0;
+        target = NONE;
+    }
+
+    private void endRun() {
+        running = false;
+
+        int distance = Math.abs(runPosition - runStartPosition);
+
+        if (distance < MIN_DISTANCE || runTime == runStartTime) {
+            return;
+        }
+
+        double speed = distance * NANOS_PER_SECOND / (runTime - runStartTime);
+
+        if (runDirection > 0) {
+            openSpeed = (openSpeed == 0) ? speed : openSpeed + (speed - openSpeed) * SMOOTHING;
+        } else {
+            closeSpeed = (closeSpeed == 0) ? speed : closeSpeed + (speed - closeSpeed) * SMOOTHING;
+        }
+    }
+
+    private double getSpeed() {
+        if (running && runDirection == direction && Math.abs(runPosition - runStartPosition) >= MIN_DISTANCE
+                && runTime != runStartTime) {
+            // The current run is already long enough, it's the most recent information about this motor
+            return Math.abs(runPosition - runStartPosition) * NANOS_PER_SECOND / (runTime - runStartTime);
+        }
+        return (direction > 0) ? openSpeed : closeSpeed;
+    }
+
+    // Where the motor stops if nobody interferes
+    private int getEnd() {
+        return (target != NONE) ? target : (direction > 0) ? 100 : 0;
+    }
+
+    private double estimate(long now) {
+        if (position == NONE) {
+            return NONE;
+        }
+
+        double speed = getSpeed();
+
+        if (direction == 0 || speed == 0) {
+            return position;
+        }
+
+        double estimate = position + direction * speed * (now - time) / NANOS_PER_SECOND;
+        int end = getEnd();
+
+        return (direction > 0) ? Math.min(estimate, end) : Math.max(estimate, end);
+    }
+
+    /**
+     * Estimate current position of a moving motor
+     *
+     * @return estimated position or -1 if the motor is not moving or the speed is not known yet
+     */
+    synchronized int getEstimate(long now) {
+        if (direction == 0 || getSpeed() == 0) {
+            return NONE;
+        }
+        return (int) Math.round(estimate(now));
+    }
+
+    /**
+     * Estimate how long the motor is going to move
+     *
+     * @return remaining travel time in nanoseconds or -1 if unknown
+     */
+    synchronized long getRemainingTime(long now) {
+        double speed = getSpeed();
+
+        if (direction == 0 || speed == 0) {
+            return NONE;
+        }
+        return (long) (Math.abs(getEnd() - estimate(now)) * NANOS_PER_SECOND / speed);
+    }
+
+    /**
+     * Check whether the motor should have reached its destination by now.
+     * Returns true only once per movement, so that the position is verified by a single read.
+     */
+    synchronized boolean checkArrival(long now) {
+        if (arrived || getRemainingTime(now) != 0) {
+            return false;
+        }
+        arrived = true;
+        return true;
+    }
+
+    synchronized boolean isMoving() {
+        return direction != 0;
+    }
+}
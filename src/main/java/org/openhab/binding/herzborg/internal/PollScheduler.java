@@ -0,0 +1,278 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link PollScheduler} polls all devices on a bus in a round-robin fashion. Polls are spread
+ * evenly over the poll interval, so that they don't pile up on the bus. If polls demand more airtime
+ * than the utilisation target, poll intervals are stretched. The rest of the airtime is always left
+ * for commands. The budget is shared fairly (max-min): devices that demand less than an equal share
+ * keep their intervals, and only the greediest ones are slowed down.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class PollScheduler {
+    private final Logger logger = LoggerFactory.getLogger(PollScheduler.class);
+
+    // Delay before the very first poll after a device is registered
+    private static final long INITIAL_DELAY = TimeUnit.SECONDS.toNanos(1);
+    // Limits for the utilisation target, in percents. Some headroom is always kept for commands.
+    public static final int MIN_TARGET = 10;
+    public static final int MAX_TARGET = 90;
+    public static final int DEFAULT_TARGET = 70;
+
+    public interface Pollable {
+        /**
+         * @return desired poll interval in milliseconds
+         */
+        long getPollInterval();
+
+        /**
+         * @return list of requests, issued by a single poll. Used for estimating bus load.
+         */
+        List<Packet> getPollRequests();
+
+        /**
+         * Perform the poll. Must not block.
+         */
+        void poll();
+    }
+
+    private static class Entry {
+        final Pollable device;
+        final long transactionTime; // Bus time, taken by a single poll, in nanoseconds
+        long nextPoll; // System.nanoTime() based
+        double demand; // Fraction of bus time, requested by the device
+        double stretch = 1; // Poll interval is multiplied by this
+
+        Entry(Pollable device, long transactionTime) {
+            this.device = device;
+            this.transactionTime = transactionTime;
+        }
+    }
+
+    private final Bus bus;
+    private final ScheduledExecutorService executor;
+    private final List<Entry> devices = new ArrayList<>();
+    private @Nullable ScheduledFuture<?> timer;
+    // Fraction of bus time, which polls may use
+    private double target = DEFAULT_TARGET / 100.0;
+    private boolean throttled;
+
+    public PollScheduler(Bus bus, ScheduledExecutorService executor) {
+        this.bus = bus;
+        this.executor = executor;
+    }
+
+    public synchronized void register(Pollable device) {
+        devices.add(new Entry(device, getTransactionTime(device)));
+        rearrange();
+    }
+
+    public synchronized void unregister(Pollable device) {
+        devices.removeIf(e -> e.device == device);
+        rearrange();
+    }
+
+    /**
+     * Set fraction of bus time, which polls may use
+     *
+     * @param percent utilisation target in percents, clamped to [{@link #MIN_TARGET}, {@link #MAX_TARGET}]
+     */
+    public synchronized void setUtilisationTarget(int percent) {
+        target = Math.max(MIN_TARGET, Math.min(percent, MAX_TARGET)) / 100.0;
+        updateLoad();
+    }
+
+    /**
+     * Notify the scheduler that device's poll interval has changed. If the new interval is shorter,
+     * the device will be polled sooner.
+     */
+    public synchronized void update(Pollable device) {
+        long now = System.nanoTime();
+
+        updateLoad();
+
+        for (Entry e : devices) {
+            if (e.device == device) {
+                long nextPoll = now + getInterval(e);
+
+                if (nextPoll - e.nextPoll < 0) {
+                    e.nextPoll = nextPoll;
+                }
+            }
+        }
+
+        reschedule(now);
+    }
+
+    private long getTransactionTime(Pollable device) {
+        long time = 0;
+
+        for (Packet pkt : device.getPollRequests()) {
+            time += bus.getTransactionTime(pkt);
+        }
+
+        return TimeUnit.MICROSECONDS.toNanos(time);
+    }
+
+    private long getInterval(Entry e) {
+        return (long) (TimeUnit.MILLISECONDS.toNanos(e.device.getPollInterval()) * e.stretch);
+    }
+
+    // Calculate fraction of bus time, requested by all the devices, and stretch poll intervals if it's too much
+    private void updateLoad() {
+        List<Entry> sorted = new ArrayList<>(devices);
+        double load = 0;
+
+        for (Entry e : sorted) {
+            e.demand = (double) e.transactionTime
+                    / TimeUnit.MILLISECONDS.toNanos(Math.max(e.device.getPollInterval(), 1));
+            load += e.demand;
+        }
+
+        // Water-filling: modest devices get what they ask for, the rest split what's left equally
+        sorted.sort(Comparator.comparingDouble(e -> e.demand));
+
+        double budget = target;
+        int remaining = sorted.size();
+
+        for (Entry e : sorted) {
+            double granted = Math.min(e.demand, budget / remaining);
+
+            e.stretch = (granted > 0 && granted < e.demand) ? e.demand / granted : 1;
+            budget -= granted;
+            remaining--;
+        }
+
+        boolean throttled = load > target;
+
+        if (throttled != this.throttled) {
+            this.throttled = throttled;
+            if (throttled) {
+                logger.warn("Polls demand {}% of bus time, more than the target of {}%; slowing down polling",
+                        Math.round(load * 100), Math.round(target * 100));
+            } else {
+                logger.info("Bus load is back to {}%, polling at the requested rate", Math.round(load * 100));
+            }
+        } else {
+            logger.debug("Bus load is {}%", Math.round(load * 100));
+        }
+    }
+
+    public synchronized boolean isThrottled() {
+        return throttled;
+    }
+
+    /**
+     * Get the interval, the device is really polled with
+     *
+     * @return poll interval in milliseconds, stretched if the bus is overloaded, or -1 if the device is not registered
+     */
+    synchronized long getEffectiveInterval(Pollable device) {
+        for (Entry e : devices) {
+            if (e.device == device) {
+                return TimeUnit.NANOSECONDS.toMillis(getInterval(e));
+            }
+        }
+        return -1;
+    }
+
+    // Recalculate bus load and evenly spread polls over the interval
+    private void rearrange() {
+        int count = devices.size();
+
+        logger.debug("{} devices registered", count);
+        updateLoad();
+
+        long now = System.nanoTime();
+
+        for (int i = 0; i < count; i++) {
+            Entry e = devices.get(i);
+            e.nextPoll = now + INITIAL_DELAY + getInterval(e) * i / count;
+        }
+
+        reschedule(now);
+    }
+
+    private void cancelTimer() {
+        ScheduledFuture<?> timer = this.timer;
+
+        if (timer != null) {
+            timer.cancel(false);
+            this.timer = null;
+        }
+    }
+
+    private void reschedule(long now) {
+        cancelTimer();
+
+        Entry next = getNext();
+
+        if (next != null) {
+            timer = executor.schedule(this::run, Math.max(next.nextPoll - now, 0), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private @Nullable Entry getNext() {
+        Entry next = null;
+
+        for (Entry e : devices) {
+            if (next == null || e.nextPoll - next.nextPoll < 0) {
+                next = e;
+            }
+        }
+
+        return next;
+    }
+
+    private synchronized void run() {
+        Entry e = getNext();
+
+        if (e == null) {
+            return;
+        }
+
+        long now = System.nanoTime();
+
+        if (e.nextPoll - now <= 0) {
+            e.nextPoll += getInterval(e);
+            if (e.nextPoll - now < 0) {
+                // We've been late for more than a whole interval, don't try to catch up
+                e.nextPoll = now + getInterval(e);
+            }
+
+            try {
+                e.device.poll();
+            } catch (RuntimeException ex) {
+                logger.warn("Unexpected error while polling: {}", ex.getMessage());
+            }
+        }
+
+        reschedule(now);
+    }
+}
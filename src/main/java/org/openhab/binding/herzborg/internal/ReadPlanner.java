@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.RegisterRange;
+
+/**
+ * The {@link ReadPlanner} combines register ranges, which need to be read, into as few READ requests
+ * as possible. Every frame costs header, CRC and device's turnaround time on top of the data itself,
+ * so one longer read is always cheaper than two shorter ones. Ranges are only merged if they overlap
+ * or are adjacent; gaps are never filled in, because reading unknown registers is not safe.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+class ReadPlanner {
+    private static final Comparator<RegisterRange> BY_ADDRESS = Comparator
+            .comparingInt(r -> Byte.toUnsignedInt(r.getFirst()));
+
+    /**
+     * Plan reading of the given ranges
+     *
+     * @param ranges ranges to read, in any order
+     * @return ranges to request, in order of addresses. A range, which hasn't been merged with anything,
+     *         is returned as it is.
+     */
+    static List<RegisterRange> plan(Collection<RegisterRange> ranges) {
+        List<RegisterRange> sorted = new ArrayList<>(ranges);
+        List<RegisterRange> plan = new ArrayList<>(sorted.size());
+        RegisterRange current = null;
+
+        sorted.sort(BY_ADDRESS);
+
+        for (RegisterRange range : sorted) {
+            if (current != null && getStart(range) <= getEnd(current) + 1) {
+                if (getEnd(range) > getEnd(current)) {
+                    current = new RegisterRange(current.getFirst(), range.getLast());
+                }
+            } else {
+                add(plan, current);
+                current = range;
+            }
+        }
+        add(plan, current);
+
+        return plan;
+    }
+
+    private static void add(List<RegisterRange> plan, @Nullable RegisterRange range) {
+        if (range != null) {
+            plan.add(range);
+        }
+    }
+
+    private static int getStart(RegisterRange range) {
+        return Byte.toUnsignedInt(range.getFirst());
+    }
+
+    private static int getEnd(RegisterRange range) {
+        return Byte.toUnsignedInt(range.getLast());
+    }
+}
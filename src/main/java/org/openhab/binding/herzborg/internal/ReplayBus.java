@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.thing.ThingStatusDetail;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link ReplayBus} answers requests with replies, recorded by {@link FrameCapture}.
+ * A request is matched against recorded requests with exactly the same bytes; they are replayed
+ * in the order of recording, and received data is delivered with the original timing relative to
+ * the request. Garbage and corrupted frames are reproduced too. Requests, which have never been
+ * recorded, are left without reply.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class ReplayBus extends Bus {
+    private final Logger logger = LoggerFactory.getLogger(ReplayBus.class);
+
+    // Recorded exchanges by request contents, and position of the next one to replay
+    private final Map<ByteBuffer, List<Exchange>> exchanges = new HashMap<>();
+    private final Map<ByteBuffer, Integer> positions = new HashMap<>();
+    private final LongAdder unmatched = new LongAdder();
+    private boolean loop;
+    private @Nullable ScheduledExecutorService executor;
+
+    /**
+     * A recorded request and everything received after it, until the next request
+     */
+    private static class Exchange {
+        final List<FrameCapture.Record> received = new ArrayList<>();
+        final long time;
+
+        Exchange(long time) {
+            this.time = time;
+        }
+    }
+
+    public Result initialize(ReplayBusConfiguration config) {
+        List<FrameCapture.Record> records;
+
+        try {
+            records = FrameCapture.load(Paths.get(config.file));
+        } catch (IOException | InvalidPathException e) {
+            return new Result(ThingStatusDetail.CONFIGURATION_ERROR, "Failed to load capture: " + e.getMessage());
+        }
+
+        this.loop = config.loop;
+        exchanges.clear();
+        positions.clear();
+
+        Exchange current = null;
+
+        for (FrameCapture.Record r : records) {
+            switch (r.type) {
+                case FrameCapture.TX:
+                    current = new Exchange(r.time);
+                    exchanges.computeIfAbsent(ByteBuffer.wrap(r.data), k -> new ArrayList<>()).add(current);
+                    break;
+                case FrameCapture.RX:
+                    if (current != null) {
+                        current.received.add(r);
+                    }
+                    break;
+                default:
+                    // A new session, timestamps start over
+                    current = null;
+                    break;
+            }
+        }
+
+        logger.debug("Loaded {} records with {} distinct requests", records.size(), exchanges.size());
+
+        executor = Executors.newSingleThreadScheduledExecutor(new BusThreadFactory("replay-devices"));
+        startWorker("replay");
+        return new Result(ThingStatusDetail.NONE);
+    }
+
+    @Override
+    protected boolean isConnected() {
+        return executor != null;
+    }
+
+    @Override
+    protected void send(byte[] data) throws IOException {
+        ScheduledExecutorService executor = this.executor;
+
+        if (executor == null) {
+            throw new IOException("Bus is not connected");
+        }
+
+        Exchange exchange = getNext(ByteBuffer.wrap(data));
+
+        if (exchange == null) {
+            unmatched.increment();
+            return;
+        }
+
+        for (FrameCapture.Record r : exchange.received) {
+            executor.schedule(() -> receive(r.data, 0, r.data.length), r.time - exchange.time, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Only called from the worker thread
+    private @Nullable Exchange getNext(ByteBuffer request) {
+        List<Exchange> list = exchanges.get(request);
+
+        if (list == null) {
+            return null;
+        }
+
+        int position = positions.getOrDefault(request, 0);
+
+        if (position >= list.size()) {
+            if (!loop) {
+                return null;
+            }
+            position = 0;
+        }
+
+        positions.put(request, position + 1);
+        return list.get(position);
+    }
+
+    @Override
+    public void dispose() {
+        ScheduledExecutorService executor = this.executor;
+
+        if (executor != null) {
+            executor.shutdownNow();
+            this.executor = null;
+        }
+
+        long count = unmatched.sumThenReset();
+        if (count != 0) {
+            logger.warn("{} requests had no recorded replies", count);
+        }
+
+        super.dispose();
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.core.thing.Bridge;
+
+/**
+ * The {@link ReplayBusHandler} runs a bus, which replays captured traffic, for testing purposes.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class ReplayBusHandler extends BusHandler {
+    public ReplayBusHandler(Bridge bridge) {
+        super(bridge, new ReplayBus());
+    }
+
+    @Override
+    protected Bus.Result initializeBus() {
+        return ((ReplayBus) bus).initialize(getConfigAs(ReplayBusConfiguration.class));
+    }
+}
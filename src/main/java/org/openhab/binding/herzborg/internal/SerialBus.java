@@ -18,6 +18,7 @@ import java.io.OutputStream;
 import java.util.TooManyListenersException;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
 import org.openhab.core.io.transport.serial.PortInUseException;
 import org.openhab.core.io.transport.serial.SerialPort;
 import org.openhab.core.io.transport.serial.SerialPortEvent;
@@ -36,6 +37,7 @@ import org.openhab.core.thing.ThingStatusDetail;
 public class SerialBus extends Bus implements SerialPortEventListener {
     private SerialPortManager serialPortManager;
     private @Nullable SerialPort serialPort;
+    private final byte[] rxBuffer = new byte[Packet.MAX_LENGTH];
 
     public SerialBus(SerialPortManager manager) {
         serialPortManager = manager;
@@ -56,19 +58,13 @@ public class SerialBus extends Bus implements SerialPortEventListener {
 
         try {
             // Herzborg serial bus operates with fixed parameters
-            commPort.setSerialPortParams(9600, SerialPort.DATABITS_8, SerialPort.STOPBITS_1, SerialPort.PARITY_NONE);
+            commPort.setSerialPortParams(BAUD_RATE, SerialPort.DATABITS_8, SerialPort.STOPBITS_1, SerialPort.PARITY_NONE);
             commPort.setFlowControlMode(SerialPort.FLOWCONTROL_NONE);
         } catch (UnsupportedCommOperationException e) {
+            commPort.close();
             return new Result(ThingStatusDetail.CONFIGURATION_ERROR, "Invalid port configuration");
         }
 
-        try {
-            commPort.enableReceiveThreshold(8);
-            commPort.enableReceiveTimeout(1000);
-        } catch (UnsupportedCommOperationException e) {
-            // OpenHAB's serial-over-IP doesn't support these, so let's ignore the exception
-        }
-
         InputStream dataIn = null;
         OutputStream dataOut = null;
         String error = null;
@@ -87,10 +83,9 @@ public class SerialBus extends Bus implements SerialPortEventListener {
                     dataIn.reset();
                 }
 
-                // RXTX serial port library causes high CPU load
-                // Start event listener, which will just sleep and slow down event
-                // loop
-                // This is copied from SonyProjector binding
+                // All the reception is driven by DATA_AVAILABLE events, we never block in read().
+                // This works the same way for real ports and for OpenHAB's serial-over-IP, which
+                // doesn't support receive timeouts and thresholds.
                 commPort.addEventListener(this);
                 commPort.notifyOnDataAvailable(true);
             }
@@ -99,6 +94,8 @@ public class SerialBus extends Bus implements SerialPortEventListener {
         }
 
         if (error != null) {
+            commPort.removeEventListener();
+            commPort.close();
             return new Result(ThingStatusDetail.HANDLER_INITIALIZING_ERROR, error);
         }
 
@@ -106,6 +103,7 @@ public class SerialBus extends Bus implements SerialPortEventListener {
         this.dataIn = dataIn;
         this.dataOut = dataOut;
 
+        startWorker(port);
         return new Result(ThingStatusDetail.NONE);
     }
 
@@ -125,6 +123,25 @@ public class SerialBus extends Bus implements SerialPortEventListener {
 
     @Override
     public void serialEvent(SerialPortEvent event) {
-        // Nothing to do here
+        InputStream dataIn = this.dataIn;
+
+        if (event.getEventType() != SerialPortEvent.DATA_AVAILABLE || dataIn == null) {
+            return;
+        }
+
+        try {
+            int n;
+
+            while ((n = Math.min(dataIn.available(), rxBuffer.length)) > 0) {
+                n = dataIn.read(rxBuffer, 0, n);
+                if (n <= 0) {
+                    break;
+                }
+                receive(rxBuffer, 0, n);
+            }
+        } catch (IOException e) {
+            // Typically the USB adapter has been reset or unplugged
+            connectionLost("Error reading serial port: " + e.getMessage());
+        }
     }
 }
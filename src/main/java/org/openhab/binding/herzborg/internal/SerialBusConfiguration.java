@@ -17,6 +17,6 @@ package org.openhab.binding.herzborg.internal;
  *
  * @author Pavel Fedin - Initial contribution
  */
-public class SerialBusConfiguration {
+public class SerialBusConfiguration extends BusConfiguration {
     public String port;
 }
@@ -15,8 +15,6 @@ package org.openhab.binding.herzborg.internal;
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.openhab.core.io.transport.serial.SerialPortManager;
 import org.openhab.core.thing.Bridge;
-import org.openhab.core.thing.ThingStatus;
-import org.openhab.core.thing.ThingStatusDetail;
 
 /**
  * The {@link SerialBusHandler} implements specific handling for Herzborg serial bus,
@@ -33,20 +31,8 @@ public class SerialBusHandler extends BusHandler {
     }
 
     @Override
-    public void initialize() {
+    protected Bus.Result initializeBus() {
         config = getConfigAs(SerialBusConfiguration.class);
-
-        Bus.Result result = ((SerialBus) bus).initialize(config.port);
-
-        if (result.code == ThingStatusDetail.NONE) {
-            updateStatus(ThingStatus.ONLINE);
-        } else {
-            updateStatus(ThingStatus.OFFLINE, result.code, result.message);
-        }
-    }
-
-    @Override
-    public void dispose() {
-        bus.dispose();
+        return ((SerialBus) bus).initialize(config.port);
     }
 }
@@ -0,0 +1,254 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.ControlAddress;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.DataAddress;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Function;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
+import org.openhab.core.thing.ThingStatusDetail;
+
+/**
+ * The {@link SimulatedBus} emulates a Herzborg bus with any number of curtain motors in-process.
+ * It's intended for load and regression testing without real hardware. Reply latency, jitter,
+ * lost replies and corrupted CRCs can be configured. Control commands, sent to the broadcast
+ * address, are executed by all the devices.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class SimulatedBus extends Bus {
+    private static final int HEADER_LENGTH = 5;
+
+    private final Map<Short, Device> devices = new ConcurrentHashMap<>();
+    private final Random random = new Random();
+    private SimulatedBusConfiguration config = new SimulatedBusConfiguration();
+    private @Nullable ScheduledExecutorService executor;
+
+    /**
+     * A simulated curtain motor
+     */
+    public static class Device {
+        private final byte[] registers = new byte[256];
+        private final Map<Byte, Integer> contexts = new HashMap<>();
+        private final long travelTime; // Full travel time in nanoseconds
+        private double position;
+        private int target;
+        private long lastUpdate = System.nanoTime();
+
+        Device(short address, long travelTime) {
+            this.travelTime = travelTime;
+            registers[DataAddress.ID_L] = (byte) address;
+            registers[DataAddress.ID_H] = (byte) (address >> 8);
+            registers[DataAddress.EXT_SWITCH] = 1;
+        }
+
+        // Advance the motor to the current moment of time
+        private void update() {
+            long now = System.nanoTime();
+            double distance = (now - lastUpdate) * 100.0 / travelTime;
+
+            lastUpdate = now;
+            if (position < target) {
+                position = Math.min(position + distance, target);
+            } else if (position > target) {
+                position = Math.max(position - distance, target);
+            }
+
+            registers[DataAddress.POSITION] = (byte) Math.round(position);
+            registers[DataAddress.MODE] = (byte) ((position < target) ? 1 : (position > target) ? 2 : 0);
+        }
+
+        synchronized void read(int address, byte[] dest, int offset, int length) {
+            update();
+            for (int i = 0; i < length; i++) {
+                dest[offset + i] = registers[(address + i) & 0xFF];
+            }
+        }
+
+        synchronized void write(int address, byte value) {
+            registers[address & 0xFF] = value;
+        }
+
+        synchronized void control(byte function, byte value) {
+            update();
+            switch (function) {
+                case ControlAddress.OPEN:
+                    target = 100;
+                    break;
+                case ControlAddress.CLOSE:
+                    target = 0;
+                    break;
+                case ControlAddress.STOP:
+                    target = (int) Math.round(position);
+                    position = target;
+                    break;
+                case ControlAddress.PERCENT:
+                    target = Math.max(0, Math.min(value, 100));
+                    break;
+                case ControlAddress.SET_CONTEXT:
+                    contexts.put(value, (int) Math.round(position));
+                    break;
+                case ControlAddress.RUN_CONTEXT:
+                    Integer context = contexts.get(value);
+                    if (context != null) {
+                        target = context;
+                    }
+                    break;
+                case ControlAddress.DEL_CONTEXT:
+                    contexts.remove(value);
+                    break;
+            }
+        }
+
+        public synchronized int getPosition() {
+            update();
+            return registers[DataAddress.POSITION];
+        }
+    }
+
+    public Result initialize(SimulatedBusConfiguration config) {
+        List<Short> addresses;
+
+        try {
+            addresses = parseAddresses(config.addresses);
+        } catch (IllegalArgumentException e) {
+            return new Result(ThingStatusDetail.CONFIGURATION_ERROR, "Invalid address list: " + config.addresses);
+        }
+
+        this.config = config;
+        devices.clear();
+        for (short address : addresses) {
+            addDevice(address);
+        }
+
+        ScheduledExecutorService executor = Executors
+                .newSingleThreadScheduledExecutor(new BusThreadFactory("simulator-devices"));
+        this.executor = executor;
+
+        startWorker("simulator");
+        return new Result(ThingStatusDetail.NONE);
+    }
+
+    public Device addDevice(short address) {
+        Device device = new Device(address, TimeUnit.SECONDS.toNanos(config.travel_time));
+
+        devices.put(address, device);
+        return device;
+    }
+
+    public @Nullable Device getDevice(short address) {
+        return devices.get(address);
+    }
+
+    @Override
+    protected boolean isConnected() {
+        return executor != null;
+    }
+
+    @Override
+    protected void send(byte[] data) throws IOException {
+        ScheduledExecutorService executor = this.executor;
+
+        if (executor == null) {
+            throw new IOException("Bus is not connected");
+        }
+
+        Packet request = new Packet(data);
+
+        if (request.getDeviceAddress() == (short) config.broadcast_address) {
+            if (request.isValid() && request.getFunction() == Function.CONTROL) {
+                // Everybody obeys, nobody answers
+                for (Device device : devices.values()) {
+                    execute(device, request);
+                }
+            }
+            return;
+        }
+
+        Device device = devices.get(request.getDeviceAddress());
+
+        if (device == null || !request.isValid() || random.nextInt(100) < config.drop_rate) {
+            // Nobody answers
+            return;
+        }
+
+        byte[] reply = execute(device, request);
+
+        if (random.nextInt(100) < config.corrupt_rate) {
+            reply[reply.length - 1] ^= 0x5A;
+        }
+
+        long delay = TimeUnit.MILLISECONDS.toMicros(config.latency + random.nextInt(Math.max(config.jitter, 0) + 1))
+                + getAirtime(data.length + reply.length);
+
+        executor.schedule(() -> receive(reply, 0, reply.length), delay, TimeUnit.MICROSECONDS);
+    }
+
+    private byte[] execute(Device device, Packet request) {
+        byte[] data = request.getBuffer();
+        byte[] reply = new byte[request.getReplyLength()];
+        int end;
+
+        switch (request.getFunction()) {
+            case Function.READ:
+                int length = Byte.toUnsignedInt(request.getDataLength());
+                System.arraycopy(data, 0, reply, 0, HEADER_LENGTH);
+                // READ reply carries data length instead of data address
+                reply[HEADER_LENGTH - 1] = (byte) length;
+                device.read(request.getDataAddress(), reply, HEADER_LENGTH, length);
+                end = HEADER_LENGTH + length;
+                break;
+            case Function.WRITE:
+                device.write(request.getDataAddress(), request.getData(1));
+                System.arraycopy(data, 0, reply, 0, HEADER_LENGTH);
+                reply[HEADER_LENGTH] = 1;
+                end = HEADER_LENGTH + 1;
+                break;
+            default:
+                device.control(request.getDataAddress(),
+                        data.length > Packet.MIN_LENGTH ? request.getData(0) : 0);
+                // CONTROL is echoed back as it is
+                return data.clone();
+        }
+
+        int crc = Packet.crc16(reply, 0, end);
+        reply[end] = (byte) crc;
+        reply[end + 1] = (byte) (crc >> 8);
+        return reply;
+    }
+
+    @Override
+    public void dispose() {
+        ScheduledExecutorService executor = this.executor;
+
+        if (executor != null) {
+            executor.shutdownNow();
+            this.executor = null;
+        }
+
+        super.dispose();
+    }
+}
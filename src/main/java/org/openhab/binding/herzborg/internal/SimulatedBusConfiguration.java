@@ -0,0 +1,28 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+/**
+ * The {@link SimulatedBusConfiguration} class contains fields mapping thing configuration parameters.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+public class SimulatedBusConfiguration extends BusConfiguration {
+    public String addresses = "1-16";
+    public int latency = 10;
+    public int jitter = 5;
+    public int drop_rate;
+    public int corrupt_rate;
+    public int travel_time = 20;
+    public int broadcast_address = 0xFFFF;
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
+import org.openhab.core.thing.ThingStatusDetail;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link TcpBus} implements specific handling for Herzborg serial bus,
+ * connected via a RS485-to-Ethernet converter in transparent TCP mode.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class TcpBus extends Bus {
+    private final Logger logger = LoggerFactory.getLogger(TcpBus.class);
+
+    private static final int CONNECT_TIMEOUT = 5000;
+
+    private volatile @Nullable InetSocketAddress address;
+    private @Nullable SocketChannel channel;
+    private @Nullable Selector selector;
+
+    public Result initialize(String host, int port) {
+        InetSocketAddress address = new InetSocketAddress(host, port);
+
+        if (address.isUnresolved()) {
+            return new Result(ThingStatusDetail.CONFIGURATION_ERROR, "Unknown host: " + host);
+        }
+
+        this.address = address;
+
+        try {
+            connect();
+        } catch (IOException e) {
+            return new Result(ThingStatusDetail.COMMUNICATION_ERROR, e.getMessage());
+        }
+
+        startWorker(host + ":" + port);
+        return new Result(ThingStatusDetail.NONE);
+    }
+
+    private synchronized void connect() throws IOException {
+        InetSocketAddress address = this.address;
+
+        if (address == null) {
+            throw new IOException("Bus is not connected");
+        }
+
+        SocketChannel channel = SocketChannel.open();
+        Selector selector = null;
+
+        try {
+            // Connect in blocking mode, it's the easiest way to get a timeout
+            channel.socket().connect(address, CONNECT_TIMEOUT);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.configureBlocking(false);
+
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            if (selector != null) {
+                selector.close();
+            }
+            channel.close();
+            throw e;
+        }
+
+        this.channel = channel;
+        this.selector = selector;
+
+        final Selector s = selector;
+        new BusThreadFactory("rx-" + address).newThread(() -> read(channel, s)).start();
+
+        logger.debug("Connected to {}", address);
+    }
+
+    private synchronized void disconnect() {
+        SocketChannel channel = this.channel;
+        Selector selector = this.selector;
+
+        this.channel = null;
+        this.selector = null;
+
+        try {
+            if (selector != null) {
+                selector.close();
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            logger.debug("Error closing connection: {}", e.getMessage());
+        }
+    }
+
+    // Reception loop. Runs until the connection is closed.
+    private void read(SocketChannel channel, Selector selector) {
+        ByteBuffer buffer = ByteBuffer.allocate(Packet.MAX_LENGTH);
+
+        try {
+            while (selector.isOpen()) {
+                selector.select();
+                selector.selectedKeys().clear();
+
+                int n;
+                while ((n = channel.read(buffer)) > 0) {
+                    receive(buffer.array(), 0, n);
+                    buffer.clear();
+                }
+
+                if (n < 0) {
+                    throw new IOException("Connection closed by peer");
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // ClosedSelectorException is a RuntimeException; it's our normal exit path
+            if (selector.isOpen()) {
+                boolean current;
+
+                synchronized (this) {
+                    current = this.channel == channel;
+                    if (current) {
+                        disconnect();
+                    }
+                }
+
+                // The bridge takes care of reconnecting
+                if (current) {
+                    connectionLost("Connection lost: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    protected boolean isConnected() {
+        return address != null;
+    }
+
+    @Override
+    protected void send(byte[] data) throws IOException {
+        SocketChannel channel;
+
+        synchronized (this) {
+            channel = this.channel;
+        }
+
+        if (channel == null) {
+            throw new IOException("Bus is not connected");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.write(buffer) == 0) {
+                    // Socket buffer is full, which is very unlikely with our tiny frames
+                    Thread.yield();
+                }
+            }
+        } catch (IOException e) {
+            disconnect();
+            throw e;
+        }
+    }
+
+    @Override
+    public void dispose() {
+        address = null;
+        super.dispose();
+        disconnect();
+    }
+}
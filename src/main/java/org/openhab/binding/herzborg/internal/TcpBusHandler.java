@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.core.thing.Bridge;
+
+/**
+ * The {@link TcpBusHandler} implements specific handling for Herzborg serial bus,
+ * connected via a RS485-to-Ethernet converter.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class TcpBusHandler extends BusHandler {
+    private TcpBusConfiguration config = new TcpBusConfiguration();
+
+    public TcpBusHandler(Bridge bridge) {
+        super(bridge, new TcpBus());
+    }
+
+    @Override
+    protected Bus.Result initializeBus() {
+        config = getConfigAs(TcpBusConfiguration.class);
+        return ((TcpBus) bus).initialize(config.host, config.port);
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * The {@link TurnaroundEstimator} learns how long a device takes to start replying. It keeps a
+ * window of recent samples and reports a high percentile over it. Not thread-safe; it's only
+ * used by the bus worker.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class TurnaroundEstimator {
+    private static final int WINDOW = 32;
+    private static final double PERCENTILE = 0.95;
+
+    private final long[] samples = new long[WINDOW];
+    private final long[] sorted = new long[WINDOW];
+    private int count;
+    private int next;
+    private long estimate;
+
+    /**
+     * Add a new sample
+     *
+     * @param micros turnaround time in microseconds
+     */
+    public void add(long micros) {
+        samples[next] = Math.max(micros, 0);
+        next = (next + 1) % WINDOW;
+        if (count < WINDOW) {
+            count++;
+        }
+
+        System.arraycopy(samples, 0, sorted, 0, count);
+        Arrays.sort(sorted, 0, count);
+        estimate = sorted[(int) Math.ceil(count * PERCENTILE) - 1];
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return 95th percentile of recent turnaround times in microseconds
+     */
+    public long getEstimate() {
+        return estimate;
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
+
+/**
+ * The {@link WireLog} keeps the last frames, which went over the bus, for diagnostics.
+ * All the storage is preallocated, so recording costs a copy of a few bytes and nothing else.
+ * Text is only produced when the log is dumped.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class WireLog {
+    public static final byte TX = 0;
+    public static final byte RX = 1;
+    public static final byte TIMEOUT = 2;
+
+    private static final String[] TYPE_NAMES = { "TX", "RX", "--" };
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+    private final int size;
+    private final long[] time; // Wall clock, milliseconds
+    private final byte[] type;
+    private final short[] address;
+    private final int[] latency; // Microseconds
+    private final boolean[] valid;
+    private final short[] length;
+    private final byte[] frames;
+    private int next;
+    private int count;
+
+    public WireLog(int size) {
+        this.size = size;
+        time = new long[size];
+        type = new byte[size];
+        address = new short[size];
+        latency = new int[size];
+        valid = new boolean[size];
+        length = new short[size];
+        frames = new byte[size * Packet.MAX_LENGTH];
+    }
+
+    /**
+     * Record a frame
+     *
+     * @param type {@link #TX}, {@link #RX} or {@link #TIMEOUT}
+     * @param address device address
+     * @param data frame data, may be empty for a timeout
+     * @param latencyMicros time since the request was sent, 0 if not known or not applicable
+     * @param valid whether the frame is valid
+     */
+    public void record(byte type, short address, byte[] data, long latencyMicros, boolean valid) {
+        record(type, address, data, 0, data.length, latencyMicros, valid);
+    }
+
+    /**
+     * Record a part of a buffer, for example rejected data. Data longer than a frame is truncated.
+     */
+    public synchronized void record(byte type, short address, byte[] data, int offset, int length,
+            long latencyMicros, boolean valid) {
+        int i = next;
+        int len = Math.min(length, Packet.MAX_LENGTH);
+
+        this.time[i] = System.currentTimeMillis();
+        this.type[i] = type;
+        this.address[i] = address;
+        this.latency[i] = (int) Math.min(latencyMicros, Integer.MAX_VALUE);
+        this.valid[i] = valid;
+        this.length[i] = (short) len;
+        System.arraycopy(data, offset, frames, i * Packet.MAX_LENGTH, len);
+
+        next = (i + 1) % size;
+        if (count < size) {
+            count++;
+        }
+    }
+
+    /**
+     * Format the log, oldest frame first
+     */
+    public synchronized List<String> dump() {
+        List<String> lines = new ArrayList<>(count);
+        ZoneId zone = ZoneId.systemDefault();
+
+        for (int n = 0; n < count; n++) {
+            int i = (next - count + n + size) % size;
+            StringBuilder line = new StringBuilder();
+
+            line.append(LocalTime.ofInstant(Instant.ofEpochMilli(time[i]), zone).format(TIME_FORMAT)).append(' ')
+                    .append(TYPE_NAMES[type[i]]).append(' ')
+                    .append(String.format("%04X", Short.toUnsignedInt(address[i])));
+
+            for (int j = 0; j < length[i]; j++) {
+                line.append(j == 0 ? "  " : " ")
+                        .append(String.format("%02X", frames[i * Packet.MAX_LENGTH + j]));
+            }
+
+            if (latency[i] != 0) {
+                line.append(String.format("  %.1f ms", latency[i] / 1000.0));
+            }
+            if (type[i] == TIMEOUT) {
+                line.append("  TIMEOUT");
+            } else if (!valid[i]) {
+                line.append("  INVALID");
+            }
+
+            lines.add(line.toString());
+        }
+
+        return lines;
+    }
+}
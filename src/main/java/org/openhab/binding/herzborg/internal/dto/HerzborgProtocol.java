@@ -12,8 +12,7 @@
  */
 package org.openhab.binding.herzborg.internal.dto;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import org.eclipse.jdt.annotation.Nullable;
 
 /**
  * Herzborg binary protocol
@@ -52,91 +51,237 @@ public class HerzborgProtocol {
         public static final byte EXT_HV_SWITCH = 0x28;
     }
 
+    /**
+     * A contiguous range of registers, which is read by a single READ request.
+     * A READ reply doesn't say which registers it carries, so the range of the request
+     * is needed for decoding it.
+     */
+    public static class RegisterRange {
+        private final int first;
+        private final int count;
+
+        /**
+         * Decodes a reply to a READ request into a device state
+         */
+        public interface Decoder<T> {
+            /**
+             * @param reply valid reply to a READ request of the given range
+             * @param range the range, which has been read; it may be larger than the decoded state
+             * @return decoded state or null if the range doesn't cover it
+             */
+            @Nullable
+            T decode(Packet reply, RegisterRange range);
+        }
+
+        public RegisterRange(byte first, byte last) {
+            this.first = Byte.toUnsignedInt(first);
+            this.count = Byte.toUnsignedInt(last) - this.first + 1;
+        }
+
+        public byte getFirst() {
+            return (byte) first;
+        }
+
+        public byte getLast() {
+            return (byte) (first + count - 1);
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public boolean contains(RegisterRange other) {
+            return other.first >= first && other.first + other.count <= first + count;
+        }
+
+        public boolean contains(byte register) {
+            int address = Byte.toUnsignedInt(register);
+            return address >= first && address < first + count;
+        }
+
+        public Packet buildRequest(short device_addr) {
+            return new Packet(device_addr, Function.READ, (byte) first, (byte) count);
+        }
+
+        /**
+         * Check that a reply carries exactly this range
+         */
+        public boolean matches(Packet reply) {
+            return reply.getFunction() == Function.READ && reply.getBuffer().length == Packet.MIN_LENGTH + count;
+        }
+
+        /**
+         * Get value of a register from a reply. The register must belong to the range.
+         */
+        public byte get(Packet reply, byte register) {
+            return reply.getData(Byte.toUnsignedInt(register) - first);
+        }
+    }
+
     public static class Packet {
         private static final int HEADER_LENGTH = 5;
         private static final int CRC16_LENGTH = 2;
         public static final int MIN_LENGTH = HEADER_LENGTH + CRC16_LENGTH;
+        public static final int MAX_LENGTH = MIN_LENGTH + 255;
 
-        private static final byte START = 0x55;
+        public static final byte START = 0x55;
+
+        // Herzborg uses modbus variant of CRC16, polynomial 0xA001 (reversed 0x8005)
+        private static final char[] CRC16_TABLE = new char[256];
+
+        static {
+            for (int i = 0; i < CRC16_TABLE.length; i++) {
+                int crc = i;
+                for (int j = 0; j < 8; j++) {
+                    crc = ((crc & 0x1) != 0) ? (crc >>> 1) ^ 0xA001 : crc >>> 1;
+                }
+                CRC16_TABLE[i] = (char) crc;
+            }
+        }
 
-        private ByteBuffer dataBuffer;
-        private int dataLength; // Packet length without CRC16
+        private final byte[] buffer;
+        private final int dataLength; // Packet length without CRC16
 
         public Packet(byte[] data) {
-            dataBuffer = ByteBuffer.wrap(data);
-            dataBuffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer = data;
             dataLength = data.length - CRC16_LENGTH;
         }
 
-        private void setHeader(short device_addr, byte function, byte data_addr, int data_length) {
-            dataLength = HEADER_LENGTH + data_length;
-
-            dataBuffer = ByteBuffer.allocate(dataLength + CRC16_LENGTH);
-            dataBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        public Packet(short device_addr, byte function, byte data_addr) {
+            buffer = new byte[MIN_LENGTH];
+            dataLength = encode(buffer, 0, device_addr, function, data_addr) - CRC16_LENGTH;
+        }
 
-            dataBuffer.put(START);
-            dataBuffer.putShort(device_addr);
-            dataBuffer.put(function);
-            dataBuffer.put(data_addr);
+        public Packet(short device_addr, byte function, byte data_addr, byte value) {
+            buffer = new byte[getLength(function, true)];
+            dataLength = encode(buffer, 0, device_addr, function, data_addr, value) - CRC16_LENGTH;
         }
 
-        private void setCrc16() {
-            dataBuffer.putShort(crc16(dataLength));
+        /**
+         * Get length of a request frame
+         *
+         * @param function function code
+         * @param hasValue whether the request carries a value byte
+         * @return total frame length, including CRC16
+         */
+        public static int getLength(byte function, boolean hasValue) {
+            if (!hasValue) {
+                return MIN_LENGTH;
+            }
+            // WRITE command also requires length of data to be written
+            return (function == Function.WRITE) ? MIN_LENGTH + 2 : MIN_LENGTH + 1;
         }
 
-        public Packet(short device_addr, byte function, byte data_addr) {
-            setHeader(device_addr, function, data_addr, 0);
-            setCrc16();
+        /**
+         * Encode a request without a value into a caller-supplied buffer
+         *
+         * @return length of the encoded frame
+         */
+        public static int encode(byte[] dest, int offset, short device_addr, byte function, byte data_addr) {
+            int end = putHeader(dest, offset, device_addr, function, data_addr);
+            return putCrc16(dest, offset, end);
         }
 
-        public Packet(short device_addr, byte function, byte data_addr, byte value) {
-            int dataLength = (function == Function.WRITE) ? 2 : 1;
+        /**
+         * Encode a request with a value into a caller-supplied buffer
+         *
+         * @return length of the encoded frame
+         */
+        public static int encode(byte[] dest, int offset, short device_addr, byte function, byte data_addr,
+                byte value) {
+            int end = putHeader(dest, offset, device_addr, function, data_addr);
 
-            setHeader(device_addr, function, data_addr, dataLength);
             if (function == Function.WRITE) {
-                // WRITE command also requires length of data to be written
-                dataBuffer.put((byte) 1);
+                dest[end++] = 1;
+            }
+            dest[end++] = value;
+
+            return putCrc16(dest, offset, end);
+        }
+
+        private static int putHeader(byte[] dest, int offset, short device_addr, byte function, byte data_addr) {
+            dest[offset] = START;
+            dest[offset + 1] = (byte) device_addr;
+            dest[offset + 2] = (byte) (device_addr >> 8);
+            dest[offset + 3] = function;
+            dest[offset + 4] = data_addr;
+            return offset + HEADER_LENGTH;
+        }
+
+        private static int putCrc16(byte[] dest, int offset, int end) {
+            int crc = crc16(dest, offset, end - offset);
+
+            dest[end] = (byte) crc;
+            dest[end + 1] = (byte) (crc >> 8);
+            return end + CRC16_LENGTH - offset;
+        }
+
+        /**
+         * Get expected length of a reply to this request
+         *
+         * @return total reply frame length, including CRC16
+         */
+        public int getReplyLength() {
+            switch (getFunction()) {
+                case Function.READ:
+                    // The reply will include data itself
+                    return MIN_LENGTH + getDataLength();
+                case Function.WRITE:
+                    // The reply is number of bytes written
+                    return MIN_LENGTH + 1;
+                case Function.CONTROL:
+                    // The whole packet will be echoed back
+                    return buffer.length;
+                default:
+                    // We must not have anything else here
+                    throw new IllegalStateException("Unknown function code");
             }
-            dataBuffer.put(value);
-            setCrc16();
         }
 
         public byte[] getBuffer() {
-            return dataBuffer.array();
+            return buffer;
         }
 
         public boolean isValid() {
-            return dataBuffer.get(0) == START && crc16(dataLength) == dataBuffer.getShort(dataLength);
+            return dataLength >= HEADER_LENGTH && buffer[0] == START
+                    && crc16(buffer, 0, dataLength) == getUnsignedShort(dataLength);
+        }
+
+        public short getDeviceAddress() {
+            return (short) getUnsignedShort(1);
         }
 
         public byte getFunction() {
-            return dataBuffer.get(3);
+            return buffer[3];
         }
 
         public byte getDataAddress() {
-            return dataBuffer.get(4);
+            return buffer[4];
         }
 
         public byte getDataLength() {
-            return dataBuffer.get(HEADER_LENGTH);
+            return buffer[HEADER_LENGTH];
         }
 
         public byte getData(int offset) {
-            return dataBuffer.get(HEADER_LENGTH + offset);
+            return buffer[HEADER_LENGTH + offset];
+        }
+
+        private int getUnsignedShort(int offset) {
+            return Byte.toUnsignedInt(buffer[offset]) | (Byte.toUnsignedInt(buffer[offset + 1]) << 8);
         }
 
-        // Herzborg uses modbus variant of CRC16
-        // Code adapted from https://habr.com/ru/post/418209/
-        private short crc16(int length) {
+        /**
+         * Table-driven modbus CRC16
+         *
+         * @return CRC16 value as an unsigned 16-bit integer
+         */
+        public static int crc16(byte[] data, int offset, int length) {
             int crc = 0xFFFF;
-            for (int i = 0; i < length; i++) {
-                crc = crc ^ Byte.toUnsignedInt(dataBuffer.get(i));
-                for (int j = 0; j < 8; j++) {
-                    int mask = ((crc & 0x1) != 0) ? 0xA001 : 0x0000;
-                    crc = ((crc >> 1) & 0x7FFF) ^ mask;
-                }
+            for (int i = offset; i < offset + length; i++) {
+                crc = (crc >>> 8) ^ CRC16_TABLE[(crc ^ data[i]) & 0xFF];
             }
-            return (short) crc;
+            return crc;
         }
     }
 }
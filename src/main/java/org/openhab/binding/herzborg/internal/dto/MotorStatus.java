@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal.dto;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.DataAddress;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.RegisterRange;
+
+/**
+ * The {@link MotorStatus} is a decoded state of the motor: position, settings and what it's doing now.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class MotorStatus {
+    public static final RegisterRange RANGE = new RegisterRange(DataAddress.POSITION, DataAddress.MODE);
+
+    // Position in percents, or -1 if calibration has been lost
+    public final int position;
+    public final boolean reverse;
+    public final boolean handStart;
+    public final int mode;
+
+    public MotorStatus(int position, boolean reverse, boolean handStart, int mode) {
+        this.position = position;
+        this.reverse = reverse;
+        this.handStart = handStart;
+        this.mode = mode;
+    }
+
+    public boolean isCalibrated() {
+        return position >= 0 && position <= 100;
+    }
+
+    /**
+     * Decode a reply
+     *
+     * @see RegisterRange.Decoder
+     */
+    public static @Nullable MotorStatus decode(Packet reply, RegisterRange range) {
+        if (!range.contains(RANGE)) {
+            return null;
+        }
+        return new MotorStatus(range.get(reply, DataAddress.POSITION), range.get(reply, DataAddress.DEFAULT_DIR) != 0,
+                range.get(reply, DataAddress.HAND_START) == 0, range.get(reply, DataAddress.MODE));
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal.dto;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.DataAddress;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.RegisterRange;
+
+/**
+ * The {@link SwitchSettings} is a decoded configuration of the motor's external switch inputs.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class SwitchSettings {
+    public static final RegisterRange RANGE = new RegisterRange(DataAddress.EXT_SWITCH, DataAddress.EXT_HV_SWITCH);
+
+    public final int extSwitch;
+    public final int hvSwitch;
+
+    public SwitchSettings(int extSwitch, int hvSwitch) {
+        this.extSwitch = extSwitch;
+        this.hvSwitch = hvSwitch;
+    }
+
+    /**
+     * Decode a reply
+     *
+     * @see RegisterRange.Decoder
+     */
+    public static @Nullable SwitchSettings decode(Packet reply, RegisterRange range) {
+        if (!range.contains(RANGE)) {
+            return null;
+        }
+        return new SwitchSettings(range.get(reply, DataAddress.EXT_SWITCH),
+                range.get(reply, DataAddress.EXT_HV_SWITCH));
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.herzborg.internal.Bus.Priority;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
+import org.openhab.binding.herzborg.internal.dto.MotorStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of a whole bus transaction: queueing, the worker thread, transmission, reply assembly
+ * and completion of the caller's future. The device is an in-memory stream, which answers right away,
+ * so only the binding's own overhead is measured.
+ * Run it with the test classpath, for example
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main BusBenchmark -prof gc}.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BusBenchmark {
+    private static final short ADDRESS = 1;
+
+    private final LoopbackBus bus = new LoopbackBus();
+    private final Packet request = MotorStatus.RANGE.buildRequest(ADDRESS);
+
+    /**
+     * A bus with a single device, which replies to every request with its status
+     */
+    private static class LoopbackBus extends Bus {
+        private final byte[] reply = ProtocolBenchmark.buildStatusReply(ADDRESS);
+
+        void start() {
+            dataOut = new OutputStream() {
+                @Override
+                public void write(int b) {
+                    // Requests are always written as a whole
+                }
+
+                @Override
+                public void write(byte[] data, int offset, int length) {
+                    receive(reply, 0, reply.length);
+                }
+            };
+            startWorker("benchmark");
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        bus.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        bus.dispose();
+    }
+
+    @Benchmark
+    public @Nullable Packet roundTrip() throws InterruptedException, ExecutionException {
+        return bus.submit(request, Priority.POLL).get();
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
+import org.openhab.binding.herzborg.internal.dto.MotorStatus;
+import org.openhab.core.config.core.Configuration;
+import org.openhab.core.thing.Bridge;
+import org.openhab.core.thing.ThingStatus;
+import org.openhab.core.thing.ThingStatusDetail;
+import org.openhab.core.thing.ThingUID;
+import org.openhab.core.thing.binding.ThingHandlerCallback;
+
+/**
+ * Tests for connection recovery of {@link BusHandler}
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@NonNullByDefault
+public class BusHandlerTest {
+    private static final long TIMEOUT = 5000;
+
+    private final TestBus testBus = new TestBus();
+    private final CountDownLatch reopenEntered = new CountDownLatch(1);
+    private final CountDownLatch reopenRelease = new CountDownLatch(1);
+    private final AtomicInteger opens = new AtomicInteger();
+    private final AtomicInteger opening = new AtomicInteger();
+    private final AtomicInteger maxOpening = new AtomicInteger();
+
+    private @NonNullByDefault({}) @Mock Bridge bridge;
+    private @NonNullByDefault({}) @Mock ThingHandlerCallback callback;
+    private @NonNullByDefault({}) TestHandler handler;
+
+    // A bus, which only knows whether it's open
+    private static class TestBus extends Bus {
+        private volatile boolean open;
+
+        @Override
+        protected boolean isConnected() {
+            return open;
+        }
+
+        @Override
+        public void dispose() {
+            open = false;
+            super.dispose();
+        }
+    }
+
+    private class TestHandler extends BusHandler {
+        TestHandler(TestBus bus) {
+            super(bridge, bus);
+        }
+
+        @Override
+        protected Bus.Result initializeBus() {
+            maxOpening.accumulateAndGet(opening.incrementAndGet(), Math::max);
+            try {
+                if (opens.incrementAndGet() == 2) {
+                    // The first reconnection attempt takes long
+                    reopenEntered.countDown();
+                    reopenRelease.await(TIMEOUT, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            testBus.open = true;
+            opening.decrementAndGet();
+            return new Bus.Result(ThingStatusDetail.NONE);
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        when(bridge.getUID()).thenReturn(new ThingUID("herzborg:simulated_bus:test"));
+        when(bridge.getConfiguration()).thenReturn(new Configuration(Collections.emptyMap()));
+        handler = new TestHandler(testBus);
+        handler.setCallback(callback);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        reopenRelease.countDown();
+        handler.dispose();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void reinitializationWaitsForReopen() throws InterruptedException {
+        handler.initialize();
+        testBus.connectionLost("test");
+        assertTrue(reopenEntered.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        Thread restart = new Thread(() -> {
+            handler.dispose();
+            handler.initialize();
+        });
+        restart.start();
+
+        // Either waits for the reconnection attempt, or races with it
+        waitFor(() -> restart.getState() == Thread.State.BLOCKED || !restart.isAlive());
+        reopenRelease.countDown();
+        restart.join(TIMEOUT);
+
+        assertFalse(restart.isAlive());
+        assertEquals(1, maxOpening.get(), "The bus has been opened by two threads at once");
+        assertEquals(3, opens.get());
+        // The obsolete attempt leaves alone the bus of the new initialization
+        assertTrue(testBus.isConnected());
+    }
+
+    @Test
+    public void disposeStopsReconnection() throws InterruptedException {
+        handler.initialize();
+        testBus.connectionLost("test");
+        assertTrue(reopenEntered.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        Thread stop = new Thread(handler::dispose);
+        stop.start();
+        waitFor(() -> stop.getState() == Thread.State.BLOCKED || !stop.isAlive());
+        reopenRelease.countDown();
+        stop.join(TIMEOUT);
+
+        // What has been opened by the attempt is closed by dispose()
+        assertFalse(testBus.isConnected());
+        assertEquals(2, opens.get());
+    }
+
+    @Test
+    public void throttledPollingIsShown() {
+        Packet poll = MotorStatus.RANGE.buildRequest((short) 1);
+
+        for (int i = 0; i < 4; i++) {
+            handler.registerDevice(new PollScheduler.Pollable() {
+                @Override
+                public long getPollInterval() {
+                    return 10;
+                }
+
+                @Override
+                public List<Packet> getPollRequests() {
+                    return Collections.singletonList(poll);
+                }
+
+                @Override
+                public void poll() {
+                    // Only scheduling matters here
+                }
+            });
+        }
+        handler.initialize();
+
+        verify(callback).statusUpdated(eq(bridge), argThat(info -> {
+            String description = info.getDescription();
+            return info.getStatus() == ThingStatus.ONLINE && description != null
+                    && description.contains("slowed down");
+        }));
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link CircuitBreaker}
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class CircuitBreakerTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final CircuitBreaker breaker = new CircuitBreaker();
+
+    private void fail(int count) {
+        for (int i = 0; i < count; i++) {
+            breaker.failure();
+        }
+    }
+
+    @Test
+    public void fewFailuresDontOpen() {
+        fail(2);
+
+        assertTrue(breaker.allowPoll());
+        assertEquals("2 consecutive failures", breaker.getDescription());
+    }
+
+    @Test
+    public void openBreakerBlocksPolls() {
+        fail(3);
+
+        assertFalse(breaker.allowPoll());
+
+        breaker.success();
+        assertTrue(breaker.allowPoll());
+        assertEquals("0 consecutive failures", breaker.getDescription());
+    }
+
+    @Test
+    public void descriptionCountsDown() {
+        fail(3);
+
+        long start = System.nanoTime();
+
+        // The first backoff is 2 seconds
+        assertEquals("3 consecutive failures, next probe in 2 s", breaker.getDescription(start));
+        assertEquals("3 consecutive failures, next probe in 1 s", breaker.getDescription(start + SECOND * 3 / 2));
+        assertEquals("3 consecutive failures, next probe in 0 s", breaker.getDescription(start + 3 * SECOND));
+    }
+
+    @Test
+    public void backoffGrows() {
+        fail(4);
+
+        long start = System.nanoTime();
+
+        assertEquals("4 consecutive failures, next probe in 4 s", breaker.getDescription(start));
+    }
+}
@@ -0,0 +1,255 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.openhab.binding.herzborg.internal.HerzborgBindingConstants.*;
+import static org.openhab.binding.herzborg.internal.SimulatedBusFixture.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.openhab.binding.herzborg.internal.Bus.Priority;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.ControlAddress;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Function;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
+import org.openhab.binding.herzborg.internal.dto.MotorStatus;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.StopMoveType;
+import org.openhab.core.thing.ChannelUID;
+import org.openhab.core.thing.Thing;
+import org.openhab.core.thing.ThingUID;
+
+/**
+ * Tests for {@link CurtainGroupHandler} against a {@link SimulatedBus}
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@NonNullByDefault
+public class CurtainGroupHandlerTest {
+    private static final ThingUID GROUP_UID = new ThingUID("herzborg:curtain_group:test");
+    private static final ChannelUID POSITION = new ChannelUID(GROUP_UID, CHANNEL_POSITION);
+    private static final ChannelUID STORE_CONTEXT = new ChannelUID(GROUP_UID, CHANNEL_STORE_CONTEXT);
+    private static final ChannelUID RUN_CONTEXT = new ChannelUID(GROUP_UID, CHANNEL_RUN_CONTEXT);
+    private static final ChannelUID DELETE_CONTEXT = new ChannelUID(GROUP_UID, CHANNEL_DELETE_CONTEXT);
+    private static final DecimalType CONTEXT = new DecimalType(5);
+    private static final short NON_MEMBER = 4;
+    private static final short ABSENT = 100;
+
+    private final SimulatedBusFixture fixture = new SimulatedBusFixture("1-" + NON_MEMBER);
+    private final SimulatedBus bus = fixture.bus;
+    private final List<CurtainHandler> handlers = new ArrayList<>();
+
+    private @NonNullByDefault({}) @Mock Thing groupThing;
+
+    @BeforeEach
+    public void setUp() {
+        List<Thing> things = new ArrayList<>();
+
+        for (int address = 1; address <= NON_MEMBER; address++) {
+            CurtainHandler handler = mock(CurtainHandler.class);
+            Thing thing = mock(Thing.class);
+
+            when(handler.getAddress()).thenReturn(address);
+            when(thing.getHandler()).thenReturn(handler);
+            handlers.add(handler);
+            things.add(thing);
+        }
+
+        when(fixture.bridge.getThings()).thenReturn(things);
+        when(groupThing.getUID()).thenReturn(GROUP_UID);
+        when(groupThing.getBridgeUID()).thenReturn(BRIDGE_UID);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        fixture.dispose();
+    }
+
+    private CurtainGroupHandler createGroup(@Nullable Integer broadcastAddress) {
+        when(groupThing.getConfiguration()).thenReturn((broadcastAddress != null)
+                ? configuration("members", "1-3", "broadcast_address", broadcastAddress)
+                : configuration("members", "1-3"));
+
+        CurtainGroupHandler handler = new CurtainGroupHandler(groupThing);
+
+        handler.setCallback(fixture.callback);
+        handler.initialize();
+        return handler;
+    }
+
+    private SimulatedBus.Device getDevice(short address) {
+        return fixture.getDevice(address);
+    }
+
+    // Keep the bus busy for a while, so that following commands stay in the queue
+    private void blockBus() {
+        bus.submit(new Packet(ABSENT, Function.READ, (byte) 0, (byte) 1), Priority.COMMAND, 500);
+    }
+
+    private CompletableFuture<@Nullable Packet> moveMember(short address, int percent) {
+        return bus.submit(new Packet(address, Function.CONTROL, ControlAddress.PERCENT, (byte) percent),
+                Priority.COMMAND);
+    }
+
+    // Wait until everything, queued before, is done, and read back the member's status
+    private MotorStatus readStatus(short address) throws InterruptedException, ExecutionException {
+        Packet reply = bus.submit(MotorStatus.RANGE.buildRequest(address), Priority.COMMAND).get();
+
+        assertNotNull(reply);
+        MotorStatus status = MotorStatus.decode(reply, MotorStatus.RANGE);
+        assertNotNull(status);
+        return status;
+    }
+
+    private void waitForPositions(int... positions) throws InterruptedException {
+        for (short address = 1; address < NON_MEMBER; address++) {
+            SimulatedBus.Device device = getDevice(address);
+            int position = positions[address - 1];
+
+            waitFor(() -> device.getPosition() == position);
+        }
+    }
+
+    // Move the members to individual positions, store them as a context, and close the members
+    private void storeContext(CurtainGroupHandler group) throws InterruptedException {
+        for (short address = 1; address < NON_MEMBER; address++) {
+            moveMember(address, address * 20);
+        }
+        waitForPositions(20, 40, 60);
+
+        group.handleCommand(STORE_CONTEXT, CONTEXT);
+        group.handleCommand(POSITION, new DecimalType(0));
+        waitForPositions(0, 0, 0);
+    }
+
+    private void runContext(@Nullable Integer broadcastAddress) throws InterruptedException, ExecutionException {
+        CurtainGroupHandler group = createGroup(broadcastAddress);
+
+        storeContext(group);
+
+        group.handleCommand(RUN_CONTEXT, CONTEXT);
+        waitForPositions(20, 40, 60);
+        // The context is only known to the members
+        assertEquals(0, readStatus(NON_MEMBER).position);
+
+        group.handleCommand(POSITION, new DecimalType(0));
+        waitForPositions(0, 0, 0);
+        group.handleCommand(DELETE_CONTEXT, CONTEXT);
+        group.handleCommand(RUN_CONTEXT, CONTEXT);
+
+        for (short address = 1; address < NON_MEMBER; address++) {
+            MotorStatus status = readStatus(address);
+
+            assertEquals(0, status.position);
+            assertEquals(0, status.mode, "Deleted context is still run");
+        }
+    }
+
+    @Test
+    public void contextIsRunOnEveryMember() throws InterruptedException, ExecutionException {
+        runContext(null);
+    }
+
+    @Test
+    public void contextIsRunByBroadcast() throws InterruptedException, ExecutionException {
+        runContext(0xFFFF);
+    }
+
+    @Test
+    public void moveIsSentToEveryMember() throws InterruptedException {
+        createGroup(null).handleCommand(POSITION, new DecimalType(50));
+
+        for (short address = 1; address < NON_MEMBER; address++) {
+            SimulatedBus.Device device = getDevice(address);
+            waitFor(() -> device.getPosition() == 50);
+        }
+        assertEquals(0, getDevice(NON_MEMBER).getPosition());
+    }
+
+    @Test
+    public void membersAreNotified() {
+        CurtainGroupHandler group = createGroup(null);
+
+        group.handleCommand(POSITION, new DecimalType(30));
+        group.handleCommand(POSITION, StopMoveType.STOP);
+
+        for (int i = 0; i < NON_MEMBER - 1; i++) {
+            verify(handlers.get(i)).startMotion(30);
+            verify(handlers.get(i)).stopMotion();
+        }
+        verify(handlers.get(NON_MEMBER - 1), never()).startMotion(anyInt());
+        verify(handlers.get(NON_MEMBER - 1), never()).stopMotion();
+    }
+
+    @Test
+    public void stopCancelsQueuedMoves() {
+        CurtainGroupHandler group = createGroup(null);
+        List<CompletableFuture<@Nullable Packet>> moves = new ArrayList<>();
+
+        blockBus();
+        for (short address = 1; address < NON_MEMBER; address++) {
+            moves.add(moveMember(address, 80));
+        }
+        group.handleCommand(POSITION, StopMoveType.STOP);
+
+        for (CompletableFuture<@Nullable Packet> move : moves) {
+            assertTrue(move.isCancelled());
+        }
+    }
+
+    @Test
+    public void broadcastStopCancelsQueuedMoves() {
+        CurtainGroupHandler group = createGroup(0xFFFF);
+        List<CompletableFuture<@Nullable Packet>> moves = new ArrayList<>();
+
+        blockBus();
+        for (short address = 1; address < NON_MEMBER; address++) {
+            moves.add(moveMember(address, 80));
+        }
+        CompletableFuture<@Nullable Packet> other = moveMember(NON_MEMBER, 80);
+        group.handleCommand(POSITION, StopMoveType.STOP);
+
+        for (CompletableFuture<@Nullable Packet> move : moves) {
+            assertTrue(move.isCancelled());
+        }
+        // Only the members are affected
+        assertFalse(other.isCancelled());
+    }
+
+    @Test
+    public void broadcastMovesAllMotors() throws InterruptedException {
+        createGroup(0xFFFF).handleCommand(POSITION, new DecimalType(50));
+
+        // A broadcast is obeyed by everybody on the bus
+        for (short address = 1; address <= NON_MEMBER; address++) {
+            SimulatedBus.Device device = getDevice(address);
+            waitFor(() -> device.getPosition() == 50);
+        }
+    }
+}
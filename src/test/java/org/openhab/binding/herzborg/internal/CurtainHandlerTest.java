@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.openhab.binding.herzborg.internal.HerzborgBindingConstants.*;
+import static org.openhab.binding.herzborg.internal.SimulatedBusFixture.*;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.openhab.core.library.types.PercentType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.thing.ChannelUID;
+import org.openhab.core.thing.Thing;
+import org.openhab.core.thing.ThingStatus;
+import org.openhab.core.thing.ThingStatusDetail;
+import org.openhab.core.thing.ThingUID;
+import org.openhab.core.thing.binding.ThingHandlerCallback;
+
+/**
+ * Tests for {@link CurtainHandler}, polling and controlling a motor on a {@link SimulatedBus}
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@NonNullByDefault
+public class CurtainHandlerTest {
+    private static final ThingUID CURTAIN_UID = new ThingUID("herzborg:curtain:test");
+    private static final ChannelUID POSITION = new ChannelUID(CURTAIN_UID, CHANNEL_POSITION);
+    private static final ChannelUID EXT_SWITCH = new ChannelUID(CURTAIN_UID, CHANNEL_EXT_SWITCH);
+    private static final short ADDRESS = 1;
+
+    private final SimulatedBusFixture fixture = new SimulatedBusFixture(String.valueOf(ADDRESS));
+    private final ThingHandlerCallback callback = fixture.callback;
+
+    private @NonNullByDefault({}) @Mock Thing thing;
+
+    @BeforeEach
+    public void setUp() {
+        when(thing.getUID()).thenReturn(CURTAIN_UID);
+        when(thing.getBridgeUID()).thenReturn(BRIDGE_UID);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        fixture.dispose();
+    }
+
+    private CurtainHandler createHandler(int address) {
+        return createHandler(address, 1);
+    }
+
+    private CurtainHandler createHandler(int address, int pollInterval) {
+        when(thing.getConfiguration()).thenReturn(configuration("address", address, "poll_interval", pollInterval));
+
+        CurtainHandler handler = new CurtainHandler(thing);
+
+        handler.setCallback(callback);
+        handler.initialize();
+        return handler;
+    }
+
+    private void verifyStatus(ThingStatus status, ThingStatusDetail detail) {
+        verify(callback, timeout(TIMEOUT).atLeastOnce()).statusUpdated(eq(thing),
+                argThat(info -> info.getStatus() == status && info.getStatusDetail() == detail));
+    }
+
+    @Test
+    public void pollPublishesState() throws InterruptedException, ExecutionException, TimeoutException {
+        CurtainHandler handler = createHandler(ADDRESS);
+
+        verify(fixture.busHandler).registerDevice(handler);
+
+        handler.poll();
+        fixture.waitForIdle();
+
+        verifyStatus(ThingStatus.ONLINE, ThingStatusDetail.NONE);
+        verify(callback).stateUpdated(POSITION, new PercentType(0));
+        // The first poll also reads settings
+        verify(callback).stateUpdated(EXT_SWITCH, new StringType("1"));
+        assertEquals(2, fixture.getTransactionCount());
+    }
+
+    @Test
+    public void settingsAreNotPolledRegularly() throws InterruptedException, ExecutionException, TimeoutException {
+        CurtainHandler handler = createHandler(ADDRESS);
+
+        handler.poll();
+        fixture.waitForIdle();
+        assertEquals(2, fixture.getTransactionCount());
+
+        handler.poll();
+        fixture.waitForIdle();
+
+        assertEquals(3, fixture.getTransactionCount());
+        assertEquals(1, handler.getPollRequests().size());
+    }
+
+    @Test
+    public void commandMovesMotor() throws InterruptedException {
+        CurtainHandler handler = createHandler(ADDRESS);
+        SimulatedBus.Device device = fixture.getDevice(ADDRESS);
+
+        handler.handleCommand(POSITION, new PercentType(50));
+        waitFor(() -> device.getPosition() == 50);
+
+        handler.poll();
+        verify(callback, timeout(TIMEOUT)).stateUpdated(POSITION, new PercentType(50));
+    }
+
+    @Test
+    public void settingIsReadBack() {
+        CurtainHandler handler = createHandler(ADDRESS);
+
+        handler.handleCommand(EXT_SWITCH, new StringType("3"));
+
+        verify(callback, timeout(TIMEOUT)).stateUpdated(EXT_SWITCH, new StringType("3"));
+    }
+
+    @Test
+    public void absentDeviceGoesOffline() {
+        CurtainHandler handler = createHandler(ADDRESS + 1);
+
+        handler.poll();
+
+        verifyStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR);
+        verify(callback, never()).stateUpdated(any(), any());
+    }
+
+    @Test
+    public void zeroPollIntervalIsClamped() {
+        CurtainHandler handler = createHandler(ADDRESS, 0);
+
+        assertEquals(1000, handler.getPollInterval());
+    }
+}
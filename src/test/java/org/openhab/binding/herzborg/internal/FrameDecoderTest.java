@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Function;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
+
+/**
+ * Tests for {@link FrameDecoder}
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class FrameDecoderTest {
+    private static final short ADDRESS = 0x1234;
+    private static final byte[] DATA = { 0x10, 0x20, 0x30 };
+
+    private final WireLog wireLog = new WireLog(16);
+    private final FrameDecoder decoder = new FrameDecoder(wireLog);
+
+    @BeforeEach
+    public void setUp() {
+        decoder.expect(new Packet(ADDRESS, Function.READ, (byte) 0x02, (byte) DATA.length));
+    }
+
+    // A valid reply to the expected READ request
+    private static byte[] buildReply() {
+        byte[] frame = new byte[Packet.MIN_LENGTH + DATA.length];
+
+        frame[0] = Packet.START;
+        frame[1] = (byte) ADDRESS;
+        frame[2] = (byte) (ADDRESS >> 8);
+        frame[3] = Function.READ;
+        frame[4] = (byte) DATA.length;
+        System.arraycopy(DATA, 0, frame, 5, DATA.length);
+
+        int crc = Packet.crc16(frame, 0, frame.length - 2);
+        frame[frame.length - 2] = (byte) crc;
+        frame[frame.length - 1] = (byte) (crc >> 8);
+        return frame;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = new byte[a.length + b.length];
+
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static void assertReply(byte[] expected, Packet reply) {
+        assertArrayEquals(expected, reply.getBuffer());
+        assertTrue(reply.isValid());
+    }
+
+    private long countInvalid() {
+        return wireLog.dump().stream().filter(line -> line.endsWith("INVALID")).count();
+    }
+
+    @Test
+    public void validFrame() {
+        byte[] frame = buildReply();
+        Packet reply = decoder.feed(frame, 0, frame.length);
+
+        assertNotNull(reply);
+        assertReply(frame, reply);
+        assertEquals(0, decoder.getResyncCount());
+        assertEquals(0, decoder.getDiscardedBytes());
+        assertEquals(0, countInvalid());
+    }
+
+    @Test
+    public void junkPrefixIsSkipped() {
+        byte[] frame = buildReply();
+        // Garbage may contain START bytes too
+        byte[] junk = { 0x01, Packet.START, 0x02, 0x03 };
+        byte[] data = concat(junk, frame);
+        Packet reply = decoder.feed(data, 0, data.length);
+
+        assertNotNull(reply);
+        assertReply(frame, reply);
+        assertEquals(junk.length, decoder.getDiscardedBytes());
+        assertTrue(decoder.getResyncCount() > 0);
+        assertEquals(0, decoder.getCrcErrors());
+
+        // Skipped up to the false START, then up to the real one
+        List<String> log = wireLog.dump();
+        assertEquals(2, log.size());
+        assertTrue(log.get(0).contains("  01  "));
+        assertTrue(log.get(1).contains("  55 02 03  "));
+        assertEquals(2, countInvalid());
+    }
+
+    @Test
+    public void frameSplitAcrossReads() {
+        byte[] frame = buildReply();
+
+        // Byte by byte, including a split header
+        for (int i = 0; i < frame.length - 1; i++) {
+            assertNull(decoder.feed(frame, i, 1));
+        }
+
+        Packet reply = decoder.feed(frame, frame.length - 1, 1);
+
+        assertNotNull(reply);
+        assertReply(frame, reply);
+        assertEquals(0, decoder.getDiscardedBytes());
+    }
+
+    @Test
+    public void crcFailureIsReported() {
+        byte[] bad = buildReply();
+        bad[bad.length - 1] ^= 0x5A;
+
+        assertNull(decoder.feed(bad, 0, bad.length));
+        assertEquals(1, decoder.getCrcErrors());
+        assertEquals(bad.length, decoder.getDiscardedBytes());
+        // The whole frame is logged once
+        assertEquals(1, countInvalid());
+
+        // A retransmission is still accepted
+        byte[] frame = buildReply();
+        Packet reply = decoder.feed(frame, 0, frame.length);
+
+        assertNotNull(reply);
+        assertReply(frame, reply);
+    }
+
+    @Test
+    public void foreignFrameIsSkipped() {
+        byte[] foreign = buildReply();
+        foreign[1] ^= 0x01;
+        byte[] frame = buildReply();
+        byte[] data = concat(foreign, frame);
+        Packet reply = decoder.feed(data, 0, data.length);
+
+        assertNotNull(reply);
+        assertReply(frame, reply);
+        assertEquals(foreign.length, decoder.getDiscardedBytes());
+    }
+
+    @Test
+    public void overflowDropsOldestData() {
+        // Much more than the buffer holds, without a single START byte
+        byte[] junk = new byte[Packet.MAX_LENGTH * 3];
+        byte[] frame = buildReply();
+
+        assertNull(decoder.feed(junk, 0, junk.length));
+        assertEquals(junk.length, decoder.getDiscardedBytes());
+
+        Packet reply = decoder.feed(frame, 0, frame.length);
+
+        assertNotNull(reply);
+        assertReply(frame, reply);
+    }
+
+    @Test
+    public void overflowWithinFrame() {
+        byte[] frame = buildReply();
+        // A partial frame, followed by more garbage than the buffer holds
+        byte[] junk = new byte[Packet.MAX_LENGTH * 2 + 1];
+
+        assertNull(decoder.feed(frame, 0, 3));
+        assertNull(decoder.feed(junk, 0, junk.length));
+
+        Packet reply = decoder.feed(frame, 0, frame.length);
+
+        assertNotNull(reply);
+        assertReply(frame, reply);
+        assertEquals(junk.length + 3, decoder.getDiscardedBytes());
+    }
+
+    @Test
+    public void leftoversAreDroppedOnExpect() {
+        byte[] frame = buildReply();
+
+        assertNull(decoder.feed(frame, 0, 4));
+        decoder.expect(new Packet(ADDRESS, Function.READ, (byte) 0x02, (byte) DATA.length));
+
+        assertEquals(4, decoder.getDiscardedBytes());
+        assertNull(decoder.feed(frame, 4, frame.length - 4));
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link MotionModel}
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class MotionModelTest {
+    private static final int STOPPED = 0;
+    private static final int OPENING = 1;
+    private static final int CLOSING = 2;
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final MotionModel model = new MotionModel();
+
+    // Feed a run at the given speed, in percents per second, from one position to another
+    private long run(long start, int from, int to, int speed) {
+        int mode = (to > from) ? OPENING : CLOSING;
+        int step = (to > from) ? speed : -speed;
+        long time = start;
+
+        for (int position = from; position != to; position += step) {
+            model.update(time, position, mode);
+            time += SECOND;
+        }
+        model.update(time, to, STOPPED);
+        return time;
+    }
+
+    // Ask the stopped motor to move to the given position, and take back the request
+    private long getTravelTime(long now, int target) {
+        model.moveTo(now, target);
+        long remaining = model.getRemainingTime(now);
+        model.stop(now);
+        return remaining;
+    }
+
+    @Test
+    public void nothingIsKnownInitially() {
+        assertEquals(-1, model.getEstimate(0));
+        assertEquals(-1, model.getRemainingTime(0));
+        assertFalse(model.isMoving());
+    }
+
+    @Test
+    public void speedIsLearnedPerDirection() {
+        long time = run(0, 0, 50, 10);
+
+        // Measured between the first and the last sample with the motor moving: 40% in 4 seconds
+        assertEquals(5 * SECOND, getTravelTime(time, 100), SECOND / 20);
+        assertEquals(-1, getTravelTime(time, 0));
+
+        // 35% in 7 seconds
+        time = run(time, 50, 10, 5);
+        assertEquals(2 * SECOND, getTravelTime(time, 0), SECOND / 20);
+        assertEquals(9 * SECOND, getTravelTime(time, 100), SECOND / 20);
+    }
+
+    @Test
+    public void shortRunsAreIgnored() {
+        model.update(0, 50, OPENING);
+        model.update(SECOND, 52, OPENING);
+        model.update(2 * SECOND, 53, STOPPED);
+
+        assertEquals(-1, getTravelTime(2 * SECOND, 100));
+    }
+
+    @Test
+    public void uncalibratedMotorIsIgnored() {
+        model.update(0, -1, OPENING);
+        model.update(SECOND, -1, OPENING);
+        model.update(2 * SECOND, -1, STOPPED);
+
+        assertEquals(-1, getTravelTime(2 * SECOND, 100));
+        assertFalse(model.isMoving());
+    }
+
+    @Test
+    public void movementIsEstimated() {
+        long time = run(0, 0, 50, 10);
+
+        model.moveTo(time, 100);
+
+        assertTrue(model.isMoving());
+        assertEquals(50, model.getEstimate(time));
+        assertEquals(70, model.getEstimate(time + 2 * SECOND));
+        assertEquals(5 * SECOND, model.getRemainingTime(time), SECOND / 100);
+        // Never beyond the target
+        assertEquals(100, model.getEstimate(time + 10 * SECOND));
+    }
+
+    @Test
+    public void movementIsNotEstimatedWithUnknownSpeed() {
+        model.update(0, 30, STOPPED);
+        model.moveTo(0, 80);
+
+        assertTrue(model.isMoving());
+        assertEquals(-1, model.getEstimate(SECOND));
+        assertEquals(-1, model.getRemainingTime(SECOND));
+    }
+
+    @Test
+    public void stopFreezesEstimate() {
+        long time = run(0, 0, 50, 10);
+
+        model.moveTo(time, 100);
+        model.stop(time + 2 * SECOND);
+
+        assertFalse(model.isMoving());
+        assertEquals(-1, model.getEstimate(time + 3 * SECOND));
+
+        // The next movement starts from where the motor has been stopped
+        model.moveTo(time + 3 * SECOND, 100);
+        assertEquals(70, model.getEstimate(time + 3 * SECOND));
+    }
+
+    @Test
+    public void stopCommandEndsRun() {
+        long time = 0;
+
+        // Closing at 10% per second, stopped by the user half way
+        for (int position = 100; position > 50; position -= 10) {
+            model.update(time, position, CLOSING);
+            time += SECOND;
+        }
+        model.update(time, 50, CLOSING);
+        model.stop(time);
+        // The motor stays where it has been stopped for a long time
+        for (int i = 0; i < 100; i++) {
+            time += SECOND;
+            model.update(time, 50, STOPPED);
+        }
+
+        assertFalse(model.isMoving());
+        model.moveTo(time, 0);
+        // The idle time must not count as a slow run
+        assertEquals(30, model.getEstimate(time + 2 * SECOND));
+        model.update(time + SECOND, 40, CLOSING);
+        assertEquals(30, model.getEstimate(time + 2 * SECOND));
+    }
+
+    @Test
+    public void arrivalIsReportedOnce() {
+        long time = run(0, 0, 50, 10);
+
+        model.moveTo(time, 80);
+
+        assertFalse(model.checkArrival(time + SECOND));
+        assertTrue(model.checkArrival(time + 3 * SECOND));
+        assertFalse(model.checkArrival(time + 4 * SECOND));
+    }
+
+    @Test
+    public void readingOverridesEstimate() {
+        long time = run(0, 0, 50, 10);
+
+        model.moveTo(time, 100);
+        // The motor is slower than expected
+        model.update(time + 2 * SECOND, 60, OPENING);
+
+        assertEquals(60, model.getEstimate(time + 2 * SECOND));
+    }
+
+    @Test
+    public void foreignMovementClearsTarget() {
+        long time = run(run(0, 50, 0, 10), 0, 50, 10);
+
+        model.moveTo(time, 80);
+        // Somebody closes the curtain by hand instead
+        model.update(time + SECOND, 45, CLOSING);
+
+        assertTrue(model.isMoving());
+        // Closing all the way, rather than stopping at the target
+        assertEquals(35, model.getEstimate(time + 2 * SECOND));
+        assertEquals(0, model.getEstimate(time + 10 * SECOND));
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
+import org.openhab.binding.herzborg.internal.dto.MotorStatus;
+
+/**
+ * Tests for bus time sharing of {@link PollScheduler}
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class PollSchedulerTest {
+    private static final Packet POLL = MotorStatus.RANGE.buildRequest((short) 1);
+
+    private final Bus bus = new SimulatedBus();
+    private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+    private final PollScheduler scheduler = new PollScheduler(bus, executor);
+    // Bus time of a single poll in milliseconds
+    private final double pollTime = bus.getTransactionTime(POLL) / 1000.0;
+
+    private static class Device implements PollScheduler.Pollable {
+        private final long interval;
+
+        Device(long interval) {
+            this.interval = interval;
+        }
+
+        @Override
+        public long getPollInterval() {
+            return interval;
+        }
+
+        @Override
+        public List<Packet> getPollRequests() {
+            return Collections.singletonList(POLL);
+        }
+
+        @Override
+        public void poll() {
+            // Nothing to do, only scheduling is tested
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Device register(long interval) {
+        Device device = new Device(interval);
+
+        scheduler.register(device);
+        return device;
+    }
+
+    // Fraction of bus time, actually used by polls of the given devices
+    private double getLoad(List<Device> devices) {
+        double load = 0;
+
+        for (Device device : devices) {
+            load += pollTime / scheduler.getEffectiveInterval(device);
+        }
+        return load;
+    }
+
+    @Test
+    public void underloadedBusIsNotThrottled() {
+        List<Device> devices = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            devices.add(register(1000));
+        }
+
+        assertFalse(scheduler.isThrottled());
+        for (Device device : devices) {
+            assertEquals(1000, scheduler.getEffectiveInterval(device));
+        }
+    }
+
+    @Test
+    public void onlyGreedyDevicesAreSlowedDown() {
+        List<Device> modest = new ArrayList<>();
+        List<Device> all = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            modest.add(register(1000));
+        }
+        Device greedy = register(50);
+
+        all.addAll(modest);
+        all.add(greedy);
+
+        assertTrue(scheduler.isThrottled());
+        // Devices, asking for less than an equal share, get what they want
+        for (Device device : modest) {
+            assertEquals(1000, scheduler.getEffectiveInterval(device));
+        }
+        // The greedy one gets the rest of the budget
+        assertTrue(scheduler.getEffectiveInterval(greedy) > 50);
+        assertEquals(PollScheduler.DEFAULT_TARGET / 100.0, getLoad(all), 0.01);
+    }
+
+    @Test
+    public void equalDevicesShareEqually() {
+        List<Device> devices = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            devices.add(register(50));
+        }
+        scheduler.setUtilisationTarget(40);
+
+        assertTrue(scheduler.isThrottled());
+        long interval = scheduler.getEffectiveInterval(devices.get(0));
+        for (Device device : devices) {
+            assertEquals(interval, scheduler.getEffectiveInterval(device));
+        }
+        assertEquals(0.4, getLoad(devices), 0.01);
+    }
+
+    @Test
+    public void throttlingIsLiftedWhenDemandDrops() {
+        Device modest = register(1000);
+        Device greedy = register(20);
+
+        assertTrue(scheduler.isThrottled());
+
+        scheduler.unregister(greedy);
+
+        assertFalse(scheduler.isThrottled());
+        assertEquals(1000, scheduler.getEffectiveInterval(modest));
+        assertEquals(-1, scheduler.getEffectiveInterval(greedy));
+    }
+
+    @Test
+    public void targetIsClamped() {
+        List<Device> devices = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            devices.add(register(10));
+        }
+        scheduler.setUtilisationTarget(100);
+
+        // Some bus time is always left for commands
+        assertEquals(PollScheduler.MAX_TARGET / 100.0, getLoad(devices), 0.01);
+    }
+
+    @Test
+    public void devicesArePolled() throws InterruptedException {
+        final int[] polls = new int[1];
+
+        scheduler.register(new Device(100) {
+            @Override
+            public void poll() {
+                synchronized (polls) {
+                    polls[0]++;
+                    polls.notifyAll();
+                }
+            }
+        });
+
+        synchronized (polls) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+            while (polls[0] < 3 && System.nanoTime() < deadline) {
+                polls.wait(100);
+            }
+            assertTrue(polls[0] >= 3);
+        }
+    }
+}
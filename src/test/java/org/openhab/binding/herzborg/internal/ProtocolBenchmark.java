@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.DataAddress;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Function;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.RegisterRange;
+import org.openhab.binding.herzborg.internal.dto.MotorStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the protocol codec: building requests, CRC16, validation and decoding of replies.
+ * Run them with the test classpath, for example
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main ProtocolBenchmark -prof gc}.
+ * The gc profiler shows allocation rate, which matters as much as speed on small devices.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolBenchmark {
+    private static final short ADDRESS = 0x1234;
+    private static final RegisterRange RANGE = MotorStatus.RANGE;
+
+    private final byte[] buffer = new byte[Packet.MAX_LENGTH];
+    private final FrameDecoder decoder = new FrameDecoder(new WireLog(64));
+    private @Nullable Packet request;
+    private @Nullable Packet reply;
+    private byte[] replyFrame = new byte[0];
+
+    /**
+     * Build a reply to a READ of the status registers, as a motor would send it
+     */
+    static byte[] buildStatusReply(short address) {
+        byte[] frame = new byte[Packet.MIN_LENGTH + RANGE.getCount()];
+
+        frame[0] = Packet.START;
+        frame[1] = (byte) address;
+        frame[2] = (byte) (address >> 8);
+        frame[3] = Function.READ;
+        frame[4] = (byte) RANGE.getCount();
+        frame[5 + DataAddress.POSITION - RANGE.getFirst()] = 42;
+        frame[5 + DataAddress.MODE - RANGE.getFirst()] = 1;
+
+        int crc = Packet.crc16(frame, 0, frame.length - 2);
+        frame[frame.length - 2] = (byte) crc;
+        frame[frame.length - 1] = (byte) (crc >> 8);
+        return frame;
+    }
+
+    @Setup
+    public void setUp() {
+        request = RANGE.buildRequest(ADDRESS);
+        replyFrame = buildStatusReply(ADDRESS);
+        reply = new Packet(replyFrame);
+    }
+
+    private Packet getRequest() {
+        Packet request = this.request;
+        if (request == null) {
+            throw new IllegalStateException("Not set up");
+        }
+        return request;
+    }
+
+    private Packet getReply() {
+        Packet reply = this.reply;
+        if (reply == null) {
+            throw new IllegalStateException("Not set up");
+        }
+        return reply;
+    }
+
+    @Benchmark
+    public Packet buildRequest() {
+        return new Packet(ADDRESS, Function.READ, RANGE.getFirst(), (byte) RANGE.getCount());
+    }
+
+    @Benchmark
+    public int encodeRequest() {
+        return Packet.encode(buffer, 0, ADDRESS, Function.READ, RANGE.getFirst(), (byte) RANGE.getCount());
+    }
+
+    @Benchmark
+    public int crc16() {
+        return Packet.crc16(replyFrame, 0, replyFrame.length - 2);
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return getReply().isValid();
+    }
+
+    @Benchmark
+    public @Nullable Packet assembleReply() {
+        decoder.expect(getRequest());
+        return decoder.feed(replyFrame, 0, replyFrame.length);
+    }
+
+    @Benchmark
+    public @Nullable MotorStatus decodeStatus() {
+        Packet reply = getReply();
+        return RANGE.matches(reply) ? MotorStatus.decode(reply, RANGE) : null;
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.RegisterRange;
+import org.openhab.binding.herzborg.internal.dto.MotorStatus;
+import org.openhab.binding.herzborg.internal.dto.SwitchSettings;
+
+/**
+ * Tests for {@link ReadPlanner}
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class ReadPlannerTest {
+    private static RegisterRange range(int first, int last) {
+        return new RegisterRange((byte) first, (byte) last);
+    }
+
+    private static void assertRange(int first, int last, RegisterRange range) {
+        assertEquals((byte) first, range.getFirst());
+        assertEquals((byte) last, range.getLast());
+    }
+
+    @Test
+    public void emptyPlan() {
+        assertTrue(ReadPlanner.plan(Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void singleRangeIsKept() {
+        RegisterRange status = MotorStatus.RANGE;
+        List<RegisterRange> plan = ReadPlanner.plan(Collections.singletonList(status));
+
+        assertEquals(1, plan.size());
+        assertSame(status, plan.get(0));
+    }
+
+    @Test
+    public void distantRangesAreNotMerged() {
+        // Gaps are never read
+        List<RegisterRange> plan = ReadPlanner.plan(Arrays.asList(SwitchSettings.RANGE, MotorStatus.RANGE));
+
+        assertEquals(2, plan.size());
+        // Sorted by address, unmerged ranges are returned as they are
+        assertSame(MotorStatus.RANGE, plan.get(0));
+        assertSame(SwitchSettings.RANGE, plan.get(1));
+    }
+
+    @Test
+    public void adjacentRangesAreMerged() {
+        List<RegisterRange> plan = ReadPlanner.plan(Arrays.asList(range(0x04, 0x05), range(0x02, 0x03)));
+
+        assertEquals(1, plan.size());
+        assertRange(0x02, 0x05, plan.get(0));
+        assertEquals(4, plan.get(0).getCount());
+    }
+
+    @Test
+    public void overlappingRangesAreMerged() {
+        List<RegisterRange> plan = ReadPlanner
+                .plan(Arrays.asList(range(0x00, 0x03), range(0x02, 0x05), range(0x27, 0x28), range(0x28, 0x29)));
+
+        assertEquals(2, plan.size());
+        assertRange(0x00, 0x05, plan.get(0));
+        assertRange(0x27, 0x29, plan.get(1));
+    }
+
+    @Test
+    public void containedRangeIsAbsorbed() {
+        RegisterRange outer = range(0x00, 0x05);
+        List<RegisterRange> plan = ReadPlanner.plan(Arrays.asList(outer, range(0x02, 0x03)));
+
+        assertEquals(1, plan.size());
+        assertRange(0x00, 0x05, plan.get(0));
+    }
+
+    @Test
+    public void highAddressesAreUnsigned() {
+        List<RegisterRange> plan = ReadPlanner.plan(Arrays.asList(range(0xF0, 0xF1), range(0x10, 0x11)));
+
+        assertEquals(2, plan.size());
+        assertRange(0x10, 0x11, plan.get(0));
+        assertRange(0xF0, 0xF1, plan.get(1));
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
+import org.openhab.core.config.core.Configuration;
+import org.openhab.core.thing.Bridge;
+import org.openhab.core.thing.ThingStatus;
+import org.openhab.core.thing.ThingUID;
+import org.openhab.core.thing.binding.ThingHandlerCallback;
+
+/**
+ * The {@link SimulatedBusFixture} is a fast {@link SimulatedBus} behind a mocked bridge, for testing thing handlers.
+ * Replies are delivered on an executor of the fixture, like on the bridge's one, so that the fixture
+ * can wait until all the traffic, caused by a handler, is over.
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+class SimulatedBusFixture {
+    static final ThingUID BRIDGE_UID = new ThingUID("herzborg:simulated_bus:test");
+    static final long TIMEOUT = 5000;
+
+    final RecordingBus bus = new RecordingBus();
+    final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+    final Bridge bridge = mock(Bridge.class);
+    final BusHandler busHandler = mock(BusHandler.class);
+    final ThingHandlerCallback callback = mock(ThingHandlerCallback.class);
+
+    /**
+     * A simulated bus, which remembers every submitted transaction
+     */
+    static class RecordingBus extends SimulatedBus {
+        private final List<CompletableFuture<@Nullable Packet>> submitted = new ArrayList<>();
+
+        @Override
+        public CompletableFuture<@Nullable Packet> submit(Packet pkt, Priority priority, long timeout) {
+            CompletableFuture<@Nullable Packet> future = super.submit(pkt, priority, timeout);
+
+            synchronized (submitted) {
+                submitted.add(future);
+            }
+            return future;
+        }
+
+        List<CompletableFuture<@Nullable Packet>> getSubmitted() {
+            synchronized (submitted) {
+                return new ArrayList<>(submitted);
+            }
+        }
+    }
+
+    /**
+     * Start the bus with the given simulated motors. Motors are fast, so that tests don't wait for long.
+     *
+     * @param addresses device addresses as in the bridge configuration
+     */
+    SimulatedBusFixture(String addresses) {
+        SimulatedBusConfiguration config = new SimulatedBusConfiguration();
+
+        config.addresses = addresses;
+        config.latency = 1;
+        config.jitter = 0;
+        config.travel_time = 1;
+        bus.initialize(config);
+        bus.setCallbackExecutor(executor);
+
+        when(busHandler.getBus()).thenReturn(bus);
+        when(busHandler.getExecutor()).thenReturn(executor);
+        when(bridge.getHandler()).thenReturn(busHandler);
+        when(bridge.getStatus()).thenReturn(ThingStatus.ONLINE);
+        when(callback.getBridge(BRIDGE_UID)).thenReturn(bridge);
+    }
+
+    void dispose() {
+        bus.dispose();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Build a thing configuration. Integers are converted to BigDecimal, like the framework does.
+     *
+     * @param keysAndValues parameter names, each one followed by its value
+     */
+    static Configuration configuration(Object... keysAndValues) {
+        Map<String, Object> config = new HashMap<>();
+
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            Object value = keysAndValues[i + 1];
+
+            config.put((String) keysAndValues[i], (value instanceof Integer) ? new BigDecimal((Integer) value) : value);
+        }
+        return new Configuration(config);
+    }
+
+    SimulatedBus.Device getDevice(short address) {
+        SimulatedBus.Device device = bus.getDevice(address);
+
+        assertNotNull(device);
+        return device;
+    }
+
+    /**
+     * Number of transactions, completed on the bus, either with a reply or with a timeout
+     */
+    long getTransactionCount() {
+        return bus.getMetrics().snapshot().transactions;
+    }
+
+    static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Wait until all the submitted transactions are done, and so are the transactions, which they lead to
+     */
+    void waitForIdle() throws InterruptedException, ExecutionException, TimeoutException {
+        int done = 0;
+
+        while (true) {
+            List<CompletableFuture<@Nullable Packet>> submitted = bus.getSubmitted();
+
+            if (submitted.size() == done) {
+                return;
+            }
+            for (; done < submitted.size(); done++) {
+                try {
+                    submitted.get(done).get(TIMEOUT, TimeUnit.MILLISECONDS);
+                } catch (ExecutionException | CancellationException e) {
+                    // Failed transactions are over too
+                }
+            }
+            // Replies are processed on the executor and may submit more transactions
+            executor.submit(() -> {
+            }).get(TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.herzborg.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.ControlAddress;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Function;
+import org.openhab.binding.herzborg.internal.dto.HerzborgProtocol.Packet;
+import org.openhab.core.thing.ThingStatusDetail;
+
+/**
+ * Tests for {@link TcpBus} against a converter, emulated on the loopback interface
+ *
+ * @author Pavel Fedin - Initial contribution
+ */
+@NonNullByDefault
+public class TcpBusTest {
+    private static final int TIMEOUT = 5;
+
+    private @Nullable ServerSocket server;
+    private final TcpBus bus = new TcpBus();
+    private final CompletableFuture<String> lost = new CompletableFuture<>();
+    // Connections, accepted by the emulated converter
+    private final BlockingQueue<Socket> accepted = new LinkedBlockingQueue<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private @Nullable Thread acceptor;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (true) {
+                    Socket peer = server.accept();
+
+                    connections.incrementAndGet();
+                    accepted.add(peer);
+                }
+            } catch (IOException e) {
+                // The server is closed
+            }
+        });
+
+        this.server = server;
+        this.acceptor = acceptor;
+        acceptor.start();
+        bus.setConnectionListener(lost::complete);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException, InterruptedException {
+        bus.dispose();
+        getServer().close();
+
+        Thread acceptor = this.acceptor;
+        if (acceptor != null) {
+            acceptor.join();
+        }
+        for (Socket peer : accepted) {
+            peer.close();
+        }
+    }
+
+    private ServerSocket getServer() {
+        ServerSocket server = this.server;
+        assertNotNull(server);
+        return server;
+    }
+
+    private Socket connect() throws IOException, InterruptedException {
+        ServerSocket server = getServer();
+        Bus.Result result = bus.initialize(server.getInetAddress().getHostAddress(), server.getLocalPort());
+
+        assertEquals(ThingStatusDetail.NONE, result.code);
+
+        Socket peer = accepted.poll(TIMEOUT, TimeUnit.SECONDS);
+        assertNotNull(peer);
+        peer.setSoTimeout(TIMEOUT * 1000);
+        return peer;
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] data = new byte[length];
+        int count = 0;
+
+        while (count < length) {
+            int n = in.read(data, count, length - count);
+            if (n < 0) {
+                throw new IOException("Connection closed");
+            }
+            count += n;
+        }
+        return data;
+    }
+
+    @Test
+    public void transactionIsCompletedByReply() throws Exception {
+        try (Socket peer = connect()) {
+            Packet request = new Packet((short) 0x1234, Function.CONTROL, ControlAddress.STOP);
+            CompletableFuture<@Nullable Packet> reply = bus.submit(request, Bus.Priority.COMMAND);
+
+            // A CONTROL request is echoed back by the device
+            byte[] received = readFully(peer.getInputStream(), request.getBuffer().length);
+            assertArrayEquals(request.getBuffer(), received);
+            peer.getOutputStream().write(received);
+
+            Packet result = reply.get(TIMEOUT, TimeUnit.SECONDS);
+            assertNotNull(result);
+            assertArrayEquals(request.getBuffer(), result.getBuffer());
+        }
+    }
+
+    @Test
+    public void peerCloseIsReported() throws Exception {
+        connect().close();
+
+        assertNotNull(lost.get(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void sendDoesNotReconnect() throws Exception {
+        connect().close();
+        lost.get(TIMEOUT, TimeUnit.SECONDS);
+
+        Packet request = new Packet((short) 0x1234, Function.CONTROL, ControlAddress.STOP);
+        CompletableFuture<@Nullable Packet> reply = bus.submit(request, Bus.Priority.COMMAND);
+
+        // The transaction fails as "no bus"; reconnecting is up to the bridge
+        assertNull(reply.get(TIMEOUT, TimeUnit.SECONDS));
+        // A reconnection would have been made before the transaction has completed, give the acceptor time to see it
+        assertNull(accepted.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, connections.get());
+    }
+}